@@ -7,6 +7,8 @@
 
 package org.nanocom.console;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 import org.apache.commons.lang3.ArrayUtils;
@@ -15,6 +17,7 @@ import static org.apache.commons.lang3.SystemUtils.*;
 import org.nanocom.console.command.Command;
 import org.nanocom.console.command.HelpCommand;
 import org.nanocom.console.command.ListCommand;
+import org.nanocom.console.formatter.DisplayWidth;
 import org.nanocom.console.helper.DialogHelper;
 import org.nanocom.console.helper.FormatterHelper;
 import org.nanocom.console.helper.HelperSet;
@@ -23,6 +26,7 @@ import org.nanocom.console.output.ConsoleOutput;
 import org.nanocom.console.output.ConsoleOutputInterface;
 import org.nanocom.console.output.OutputInterface;
 import org.nanocom.console.output.OutputInterface.VerbosityLevel;
+import org.nanocom.console.output.StreamOutput;
 
 /**
  * An Application is the container for a collection of commands.
@@ -132,22 +136,34 @@ public class Application {
             output = new ConsoleOutput();
         }
 
-        int statusCode;
+        int statusCode = 0;
 
         try {
-            statusCode = doRun(input, output);
-        } catch (RuntimeException e) {
-            if (!catchExceptions) {
-                throw e;
-            }
+            try {
+                statusCode = doRun(input, output);
+            } catch (RuntimeException e) {
+                if (!catchExceptions) {
+                    throw e;
+                }
 
-            if (output instanceof ConsoleOutputInterface) {
-                renderException(e, ((ConsoleOutputInterface) output).getErrorOutput());
-            } else {
-                renderException(e, output);
-            }
+                // What was written before the error is displayed before it
+                output.flush();
+
+                if (output instanceof ConsoleOutputInterface) {
+                    renderException(e, ((ConsoleOutputInterface) output).getErrorOutput());
+                } else {
+                    renderException(e, output);
+                }
 
-            statusCode = e.hashCode();
+                statusCode = e.hashCode();
+            }
+        } finally {
+            // Buffered messages would be lost on exit, and outputs such as
+            // compressed files are only complete once closed
+            int completion = complete(output, autoExit);
+            if (0 == statusCode) {
+                statusCode = completion;
+            }
         }
 
         if (autoExit) {
@@ -161,6 +177,42 @@ public class Application {
         return statusCode;
     }
 
+    /**
+     * Flushes the output, or closes it if it can be closed, rendering the
+     * error to the error output when it fails.
+     *
+     * @param output An Output instance
+     * @param close  Whether to close the output
+     *
+     * @return 0 if everything went fine, or an error code
+     */
+    private int complete(OutputInterface output, boolean close) {
+        Exception error;
+
+        try {
+            if (close && output instanceof Closeable) {
+                ((Closeable) output).close();
+            } else {
+                output.flush();
+            }
+
+            return 0;
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        // The output itself may not be written anymore
+        if (output instanceof ConsoleOutputInterface) {
+            renderException(error, ((ConsoleOutputInterface) output).getErrorOutput());
+        } else {
+            renderException(error, new StreamOutput(System.err));
+        }
+
+        return error.hashCode();
+    }
+
     /**
      * Runs the current application.
      *
@@ -203,6 +255,10 @@ public class Application {
 
         if (true == input.hasParameterOption(Arrays.asList("--quiet", "-q"))) {
             output.setVerbosity(VerbosityLevel.QUIET);
+        } else if (true == input.hasParameterOption("-vvv")) {
+            output.setVerbosity(VerbosityLevel.DEBUG);
+        } else if (true == input.hasParameterOption("-vv")) {
+            output.setVerbosity(VerbosityLevel.VERY_VERBOSE);
         } else if (true == input.hasParameterOption(Arrays.asList("--verbose", "-v"))) {
             output.setVerbosity(VerbosityLevel.VERBOSE);
         }
@@ -270,11 +326,10 @@ public class Application {
         messages.add("<comment>Options:</comment>");
 
         for (InputOption option : getDefinition().getOptions().values()) {
-            messages.add(
-                    String.format("  %-29s %s %s",
-                    String.format("<info>--%s</info>", option.getName()),
-                    null != option.getShortcut() ? String.format("<info>-%s</info>", option.getShortcut()) : "  ",
-                    option.getDescription()
+            messages.add(String.format("  %s %s %s",
+                DisplayWidth.padMessage(String.format("<info>--%s</info>", option.getName()), 16),
+                null != option.getShortcut() ? String.format("<info>-%s</info>", option.getShortcut()) : "  ",
+                option.getDescription()
             ));
         }
 
@@ -674,7 +729,7 @@ public class Application {
 
         int width = 0;
         for (Command command : cmds.values()) {
-            width = command.getName().length() > width ? command.getName().length() : width;
+            width = Math.max(DisplayWidth.of(command.getName()), width);
         }
         width += 2;
 
@@ -683,7 +738,7 @@ public class Application {
             for (Map<String, Command> commandsMap : sortCommands(cmds).values()) {
                 for (Command command : commandsMap.values()) {
                     String description = null != command.getDescription() ? command.getDescription() : EMPTY;
-                    messages.add(String.format("%-" + String.valueOf(width) + "s %s", command.getName(), description));
+                    messages.add(DisplayWidth.pad(command.getName(), width) + " " + description);
                 }
             }
 
@@ -708,7 +763,7 @@ public class Application {
 
             for (Entry<String, Command> command : commandsMap.getValue().entrySet()) {
                 String description = null != command.getValue().getDescription() ? command.getValue().getDescription() : EMPTY;
-                messages.add(String.format("  <info>%-" + String.valueOf(width) + "s</info> %s", command.getKey(), description));
+                messages.add(String.format("  <info>%s</info> %s", DisplayWidth.pad(command.getKey(), width), description));
             }
         }
 
@@ -745,7 +800,7 @@ public class Application {
         Throwable t = e;
         do {
             String title = String.format("  [%s]  ", t.getClass().getSimpleName());
-            int len = title.length();
+            int len = DisplayWidth.of(title);
             Integer width = getTerminalWidth();
 
             if (null == width) {
@@ -761,16 +816,16 @@ public class Application {
                 String[] lines2 = split(line, width - 4);
                 for (String line2 : lines2) {
                     lines.add(String.format("  %s  ", line2));
-                    len = Math.max(line2.length() + 4, len);
+                    len = Math.max(DisplayWidth.of(line2) + 4, len);
                 }
             }
 
             List<String> messages = new ArrayList<String>();
             messages.add(repeat(" ", len));
-            messages.add(title + repeat(" ", Math.max(0, len - title.length())));
+            messages.add(DisplayWidth.pad(title, len));
 
             for (String line : lines) {
-                messages.add(line + repeat(" ", len - line.length()));
+                messages.add(DisplayWidth.pad(line, len));
             }
 
             messages.add(repeat(" ", len));
@@ -785,7 +840,7 @@ public class Application {
             output.writeln(EMPTY);
             output.writeln(EMPTY);
 
-            if (OutputInterface.VerbosityLevel.VERBOSE.equals(output.getVerbosity())) {
+            if (output.getVerbosity().includes(OutputInterface.VerbosityLevel.VERBOSE)) {
                 output.writeln("<comment>Exception trace:</comment>");
 
                 // exception related properties
@@ -1050,12 +1105,17 @@ public class Application {
     }
 
     private String[] split(String string, int width) {
-        int length = length(string);
         List<String> strings = new ArrayList<String>();
-        int offset = 0;
-        while (offset < length - 1) {
-            strings.add(string.substring(offset, Math.min(offset + width, length)));
-            offset += width;
+        String rest = string;
+        while (rest.length() > 0) {
+            String line = DisplayWidth.truncate(rest, width);
+            if (0 == line.length()) {
+                // Too narrow for a single character
+                line = rest.substring(0, rest.offsetByCodePoints(0, 1));
+            }
+
+            strings.add(line);
+            rest = rest.substring(line.length());
         }
 
         String[] result = new String[strings.size()];
@@ -0,0 +1,22 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.exception;
+
+/**
+ * An exception thrown when an output can not be written.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class OutputException extends RuntimeException {
+
+    static final long serialVersionUID = 4527430914751402347L;
+
+    public OutputException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
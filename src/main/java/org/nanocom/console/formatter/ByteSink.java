@@ -0,0 +1,401 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encodes the text appended to it into a reusable buffer, written to a byte
+ * stream when full or flushed.
+ *
+ * ASCII characters are copied as they are when the charset encodes them as
+ * single bytes, which UTF-8 and most single byte charsets do: only the other
+ * characters go through the charset encoder. Escape sequences, which are
+ * ASCII, may also be written as bytes directly, and the formatter does so
+ * with the sequences its styles keep encoded.
+ *
+ * The bytes are written to the stream by writeBuffers(), which subclasses
+ * override to write them elsewhere. Bytes too large to be buffered are
+ * handed to it along with the buffer, while text of any length is encoded
+ * through the buffer, drained each time it is full.
+ *
+ * A sink is not thread-safe.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class ByteSink implements Appendable, Flushable {
+
+    /**
+     * The default size of the buffer, in bytes.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+    private final boolean asciiCompatible;
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param out      The stream to write the bytes to
+     * @param charset  The charset of the stream
+     * @param capacity The size of the buffer, in bytes
+     */
+    public ByteSink(OutputStream out, Charset charset, int capacity) {
+        this(out, charset, ByteBuffer.allocate(Math.max(capacity, MIN_CAPACITY)));
+
+        if (null == out) {
+            throw new IllegalArgumentException("The stream cannot be null.");
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param out     The stream to write the bytes to
+     * @param charset The charset of the stream
+     */
+    public ByteSink(OutputStream out, Charset charset) {
+        this(out, charset, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param out The stream to write UTF-8 bytes to
+     */
+    public ByteSink(OutputStream out) {
+        this(out, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Constructor for sinks not writing to a stream, which override
+     * writeBuffers().
+     *
+     * @param charset  The charset of the bytes
+     * @param capacity The size of the buffer, in bytes
+     * @param direct   Whether to allocate the buffer outside of the heap
+     */
+    protected ByteSink(Charset charset, int capacity, boolean direct) {
+        this(null, charset, direct ? ByteBuffer.allocateDirect(Math.max(capacity, MIN_CAPACITY)) : ByteBuffer.allocate(Math.max(capacity, MIN_CAPACITY)));
+    }
+
+    /**
+     * Constructor for sinks not writing to a stream, which override
+     * writeBuffers().
+     *
+     * @param charset The charset of the bytes
+     * @param buffer  The buffer to encode the text into
+     */
+    protected ByteSink(Charset charset, ByteBuffer buffer) {
+        this(null, charset, buffer);
+    }
+
+    private ByteSink(OutputStream out, Charset charset, ByteBuffer buffer) {
+        this.out = out;
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.buffer = buffer;
+    }
+
+    /**
+     * Checks whether a charset encodes ASCII characters as single bytes of
+     * the same value.
+     *
+     * @param charset The charset
+     *
+     * @return True if ASCII text may be copied as it is
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+
+        char[] ascii = new char[0x80];
+        for (char c = 0; c < ascii.length; c++) {
+            ascii[c] = c;
+        }
+
+        ByteBuffer encoded = charset.encode(CharBuffer.wrap(ascii));
+        if (encoded.remaining() != ascii.length) {
+            return false;
+        }
+
+        for (int i = 0; i < ascii.length; i++) {
+            if (encoded.get(i) != i) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the charset the text is encoded with.
+     *
+     * @return The charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets the number of bytes waiting in the buffer.
+     *
+     * @return The number of bytes
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteSink append(CharSequence text) throws IOException {
+        if (null == text) {
+            text = "null";
+        }
+
+        return append(text, 0, text.length());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteSink append(CharSequence text, int start, int end) throws IOException {
+        if (null == text) {
+            text = "null";
+        }
+
+        int i = start;
+
+        while (i < end) {
+            if (asciiCompatible) {
+                i = appendAscii(text, i, end);
+                if (i == end) {
+                    break;
+                }
+            }
+
+            int next = i + 1;
+            while (next < end && (!asciiCompatible || text.charAt(next) >= 0x80)) {
+                next++;
+            }
+
+            encode(CharBuffer.wrap(text, i, next));
+            i = next;
+        }
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteSink append(char c) throws IOException {
+        if (asciiCompatible && c < 0x80) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) c);
+        } else {
+            encode(CharBuffer.wrap(new char[] {c}));
+        }
+
+        return this;
+    }
+
+    /**
+     * Writes bytes already encoded with the charset of the sink.
+     *
+     * @param bytes The bytes
+     *
+     * @return This sink
+     *
+     * @throws IOException When the stream can not be written
+     */
+    public ByteSink write(byte[] bytes) throws IOException {
+        return write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes bytes already encoded with the charset of the sink.
+     *
+     * @param bytes  The bytes
+     * @param offset Offset of the first byte to write
+     * @param length The number of bytes to write
+     *
+     * @return This sink
+     *
+     * @throws IOException When the stream can not be written
+     */
+    public ByteSink write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.remaining()) {
+            if (length > buffer.capacity()) {
+                // Too large to be buffered: written along with the buffer
+                buffer.flip();
+                try {
+                    writeBuffers(buffer, ByteBuffer.wrap(bytes, offset, length));
+                } finally {
+                    buffer = nextBuffer(buffer);
+                }
+
+                return this;
+            }
+
+            drain();
+        }
+
+        buffer.put(bytes, offset, length);
+
+        return this;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream and flushes it.
+     *
+     * @throws IOException When the stream can not be written
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+
+        if (null != out) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the stream, without flushing it.
+     *
+     * @throws IOException When the stream can not be written
+     */
+    public void drain() throws IOException {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            try {
+                writeBuffers(buffer);
+            } finally {
+                buffer = nextBuffer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of buffers, in order.
+     *
+     * @param buffers The buffers, the first one being the buffer of the sink
+     *
+     * @throws IOException When the bytes can not be written
+     */
+    protected void writeBuffers(ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer bytes : buffers) {
+            out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            bytes.position(bytes.limit());
+        }
+    }
+
+    /**
+     * Gets the buffer to encode the next bytes into, once the bytes of the
+     * buffer of the sink have been written.
+     *
+     * @param written The buffer of the sink
+     *
+     * @return The same buffer, cleared
+     *
+     * @throws IOException When no buffer can be provided
+     */
+    protected ByteBuffer nextBuffer(ByteBuffer written) throws IOException {
+        written.clear();
+
+        return written;
+    }
+
+    private int appendAscii(CharSequence text, int start, int end) throws IOException {
+        if (!buffer.hasArray()) {
+            return appendAsciiDirect(text, start, end);
+        }
+
+        byte[] bytes = buffer.array();
+        int offset = buffer.arrayOffset();
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int i = start;
+
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+
+            if (position == limit) {
+                buffer.position(position);
+                drain();
+                bytes = buffer.array();
+                offset = buffer.arrayOffset();
+                position = buffer.position();
+                limit = buffer.limit();
+            }
+
+            bytes[offset + position++] = (byte) c;
+        }
+
+        buffer.position(position);
+
+        return i;
+    }
+
+    private int appendAsciiDirect(CharSequence text, int start, int end) throws IOException {
+        int i = start;
+
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+
+            buffer.put((byte) c);
+        }
+
+        return i;
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+
+        for (CoderResult result = encoder.encode(chars, buffer, true); result.isOverflow(); result = encoder.encode(chars, buffer, true)) {
+            drain();
+        }
+
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+}
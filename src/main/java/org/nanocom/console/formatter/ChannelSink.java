@@ -0,0 +1,92 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes the text appended to it into a direct buffer, written to a channel
+ * when full or flushed.
+ *
+ * When the channel supports gathering writes, bytes too large to be buffered
+ * are written along with the buffer in a single call.
+ *
+ * The channel is expected to be in blocking mode. A sink is not thread-safe.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class ChannelSink extends ByteSink {
+
+    private final WritableByteChannel channel;
+
+    /**
+     * Constructor.
+     *
+     * @param channel  The channel to write the bytes to
+     * @param charset  The charset of the channel
+     * @param capacity The size of the buffer, in bytes
+     */
+    public ChannelSink(WritableByteChannel channel, Charset charset, int capacity) {
+        super(charset, capacity, true);
+
+        if (null == channel) {
+            throw new IllegalArgumentException("The channel cannot be null.");
+        }
+
+        this.channel = channel;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to write the bytes to
+     * @param charset The charset of the channel
+     */
+    public ChannelSink(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Gets the channel the bytes are written to.
+     *
+     * @return The channel
+     */
+    public WritableByteChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void writeBuffers(ByteBuffer... buffers) throws IOException {
+        if (buffers.length > 1 && channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            long remaining = 0;
+            for (ByteBuffer bytes : buffers) {
+                remaining += bytes.remaining();
+            }
+
+            while (remaining > 0) {
+                remaining -= gathering.write(buffers);
+            }
+
+            return;
+        }
+
+        for (ByteBuffer bytes : buffers) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+/**
+ * The number of colors a terminal can display.
+ *
+ * Styles using more colors than the terminal supports are reduced to the
+ * closest colors available.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public enum ColorDepth {
+
+    /**
+     * The 8 named colors.
+     */
+    BASIC,
+
+    /**
+     * The 256 colors palette.
+     */
+    INDEXED,
+
+    /**
+     * 24-bit colors.
+     */
+    TRUE_COLOR;
+
+    /**
+     * Guesses the color depth of the terminal from the environment.
+     *
+     * @return The color depth, BASIC when nothing tells more colors are
+     *         supported
+     */
+    public static ColorDepth detect() {
+        String colorTerm = System.getenv("COLORTERM");
+        if ("truecolor".equalsIgnoreCase(colorTerm) || "24bit".equalsIgnoreCase(colorTerm)) {
+            return TRUE_COLOR;
+        }
+
+        String term = System.getenv("TERM");
+        if (null != term && term.contains("256color")) {
+            return INDEXED;
+        }
+
+        return BASIC;
+    }
+}
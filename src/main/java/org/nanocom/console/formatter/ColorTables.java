@@ -0,0 +1,148 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+/**
+ * Lookup tables reducing colors to smaller palettes, built once.
+ *
+ * The 256 colors palette is the xterm one: 16 system colors, a 6x6x6 color
+ * cube and 24 shades of grey.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+final class ColorTables {
+
+    private static final int[] CUBE_LEVELS = {0x00, 0x5F, 0x87, 0xAF, 0xD7, 0xFF};
+    private static final int[] SYSTEM_COLORS = {
+        0x000000, 0xCD0000, 0x00CD00, 0xCDCD00, 0x0000EE, 0xCD00CD, 0x00CDCD, 0xE5E5E5,
+        0x7F7F7F, 0xFF0000, 0x00FF00, 0xFFFF00, 0x5C5CFF, 0xFF00FF, 0x00FFFF, 0xFFFFFF
+    };
+
+    /**
+     * The RGB value of each palette color.
+     */
+    private static final int[] PALETTE = buildPalette();
+
+    /**
+     * The closest cube level of each channel value.
+     */
+    private static final byte[] CUBE_INDEX = buildCubeIndex();
+
+    /**
+     * The closest shade of grey of each channel value.
+     */
+    private static final byte[] GREY_INDEX = buildGreyIndex();
+
+    /**
+     * The closest of the 8 basic colors of each palette color.
+     */
+    private static final byte[] BASIC_INDEX = buildBasicIndex();
+
+    private ColorTables() {
+    }
+
+    /**
+     * Reduces a 24-bit color to the palette.
+     *
+     * @param rgb The color, as 0xRRGGBB
+     *
+     * @return The palette index
+     */
+    static int toPalette(int rgb) {
+        int r = rgb >> 16 & 0xFF;
+        int g = rgb >> 8 & 0xFF;
+        int b = rgb & 0xFF;
+
+        // The closest color is either in the cube or a grey
+        int cube = 16 + 36 * CUBE_INDEX[r] + 6 * CUBE_INDEX[g] + CUBE_INDEX[b];
+        int grey = 232 + GREY_INDEX[(r + g + b) / 3];
+
+        return distance(rgb, PALETTE[grey]) < distance(rgb, PALETTE[cube]) ? grey : cube;
+    }
+
+    /**
+     * Reduces a palette color to the 8 basic colors.
+     *
+     * @param index The palette index
+     *
+     * @return The index of the basic color, from 0 (black) to 7 (white)
+     */
+    static int toBasic(int index) {
+        return BASIC_INDEX[index];
+    }
+
+    private static int[] buildPalette() {
+        int[] palette = new int[256];
+
+        System.arraycopy(SYSTEM_COLORS, 0, palette, 0, SYSTEM_COLORS.length);
+
+        for (int i = 0; i < 216; i++) {
+            palette[16 + i] = CUBE_LEVELS[i / 36] << 16 | CUBE_LEVELS[i / 6 % 6] << 8 | CUBE_LEVELS[i % 6];
+        }
+
+        for (int i = 0; i < 24; i++) {
+            int level = 8 + 10 * i;
+            palette[232 + i] = level << 16 | level << 8 | level;
+        }
+
+        return palette;
+    }
+
+    private static byte[] buildCubeIndex() {
+        byte[] index = new byte[256];
+
+        for (int value = 0, level = 0; value < 256; value++) {
+            if (level < 5 && value - CUBE_LEVELS[level] > CUBE_LEVELS[level + 1] - value) {
+                level++;
+            }
+            index[value] = (byte) level;
+        }
+
+        return index;
+    }
+
+    private static byte[] buildGreyIndex() {
+        byte[] index = new byte[256];
+
+        for (int value = 0; value < 256; value++) {
+            index[value] = (byte) Math.max(0, Math.min(23, (value - 3) / 10));
+        }
+
+        return index;
+    }
+
+    private static byte[] buildBasicIndex() {
+        byte[] index = new byte[256];
+
+        for (int i = 0; i < 256; i++) {
+            if (i < 16) {
+                // Bright colors are displayed as bold basic ones by basic terminals
+                index[i] = (byte) (i % 8);
+                continue;
+            }
+
+            int closest = 0;
+            for (int basic = 1; basic < 8; basic++) {
+                if (distance(PALETTE[i], SYSTEM_COLORS[basic]) < distance(PALETTE[i], SYSTEM_COLORS[closest])) {
+                    closest = basic;
+                }
+            }
+            index[i] = (byte) closest;
+        }
+
+        return index;
+    }
+
+    private static int distance(int rgb1, int rgb2) {
+        int r = (rgb1 >> 16 & 0xFF) - (rgb2 >> 16 & 0xFF);
+        int g = (rgb1 >> 8 & 0xFF) - (rgb2 >> 8 & 0xFF);
+        int b = (rgb1 & 0xFF) - (rgb2 & 0xFF);
+
+        return r * r + g * g + b * b;
+    }
+}
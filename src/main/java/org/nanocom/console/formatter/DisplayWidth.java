@@ -0,0 +1,262 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+/**
+ * Measures the number of terminal columns taken by texts.
+ *
+ * Escape sequences take no column, East Asian wide characters take two
+ * columns, and combining marks and control characters take none. Message
+ * variants also skip the style tags.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public final class DisplayWidth {
+
+    private static final char ESCAPE = '\033';
+
+    /**
+     * Ranges of East Asian wide and fullwidth code points, sorted.
+     */
+    private static final int[] WIDE_RANGES = {
+        0x1100, 0x115F, 0x2329, 0x232A, 0x2E80, 0x303E, 0x3041, 0x33FF,
+        0x3400, 0x4DBF, 0x4E00, 0x9FFF, 0xA000, 0xA4CF, 0xAC00, 0xD7A3,
+        0xF900, 0xFAFF, 0xFE10, 0xFE19, 0xFE30, 0xFE6F, 0xFF00, 0xFF60,
+        0xFFE0, 0xFFE6, 0x1F300, 0x1F64F, 0x1F900, 0x1F9FF, 0x20000, 0x2FFFD,
+        0x30000, 0x3FFFD
+    };
+
+    /**
+     * Columns of the Basic Multilingual Plane characters, 2 bits each.
+     */
+    private static final byte[] BMP_COLUMNS = buildBmpColumns();
+
+    private static byte[] buildBmpColumns() {
+        byte[] columns = new byte[0x10000 >> 2];
+
+        for (int c = 0; c < 0x10000; c++) {
+            columns[c >> 2] |= computeColumns(c) << ((c & 3) << 1);
+        }
+
+        return columns;
+    }
+
+    private static int computeColumns(int codePoint) {
+        if (codePoint < 0x20 || (codePoint >= 0x7F && codePoint < 0xA0)) {
+            return 0;
+        }
+
+        switch (Character.getType(codePoint)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.FORMAT:
+                // The soft hyphen is displayed
+                return 0xAD == codePoint ? 1 : 0;
+            default:
+                break;
+        }
+
+        // Hangul medial vowels and final consonants combine with the initial consonant
+        if (codePoint >= 0x1160 && codePoint <= 0x11FF) {
+            return 0;
+        }
+
+        for (int i = 0; i < WIDE_RANGES.length && codePoint >= WIDE_RANGES[i]; i += 2) {
+            if (codePoint <= WIDE_RANGES[i + 1]) {
+                return 2;
+            }
+        }
+
+        return 1;
+    }
+
+    private DisplayWidth() {
+    }
+
+    /**
+     * Gets the number of columns taken by a character.
+     *
+     * @param codePoint The character
+     *
+     * @return 0, 1 or 2
+     */
+    public static int of(int codePoint) {
+        if (codePoint < 0x10000) {
+            return BMP_COLUMNS[codePoint >> 2] >> ((codePoint & 3) << 1) & 3;
+        }
+
+        return computeColumns(codePoint);
+    }
+
+    /**
+     * Gets the number of columns taken by a text, escape sequences excluded.
+     *
+     * @param text The text
+     *
+     * @return The number of columns
+     */
+    public static int of(CharSequence text) {
+        return of(text, 0, text.length());
+    }
+
+    /**
+     * Gets the number of columns taken by a range of a text, escape sequences
+     * excluded.
+     *
+     * @param text  The text
+     * @param start Offset of the range in the text
+     * @param end   Offset after the range in the text
+     *
+     * @return The number of columns
+     */
+    public static int of(CharSequence text, int start, int end) {
+        int columns = 0;
+
+        for (int i = start; i < end;) {
+            char c = text.charAt(i);
+
+            if (c < 0x7F && c >= 0x20) {
+                columns++;
+                i++;
+            } else if (ESCAPE == c) {
+                i = skipEscapeSequence(text, i, end);
+            } else {
+                int codePoint = Character.codePointAt(text, i);
+                columns += of(codePoint);
+                i += Character.charCount(codePoint);
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * Gets the number of columns taken by a message once formatted, its style
+     * tags and escape sequences excluded.
+     *
+     * Every tag which may be a style tag is skipped: the result is accurate
+     * for messages using defined styles only.
+     *
+     * @param message The message
+     *
+     * @return The number of columns
+     */
+    public static int ofMessage(CharSequence message) {
+        int columns = 0;
+        OutputFormatterTokenizer tokenizer = new OutputFormatterTokenizer(message);
+
+        while (tokenizer.next()) {
+            // "<>" is output as it is
+            boolean styleTag = tokenizer.isTag() && (tokenizer.isClosing() || !tokenizer.isAnonymous());
+            columns += of(message, styleTag ? tokenizer.getTextStart() : tokenizer.getStart(), tokenizer.getEnd());
+        }
+
+        return columns;
+    }
+
+    /**
+     * Pads a text with spaces on the right to the given number of columns.
+     *
+     * @param text    The text
+     * @param columns The number of columns
+     *
+     * @return The padded text, or the text itself when it is wide enough
+     */
+    public static String pad(String text, int columns) {
+        return pad(text, of(text), columns);
+    }
+
+    /**
+     * Pads a message with spaces on the right so that it takes the given
+     * number of columns once formatted.
+     *
+     * @param message The message
+     * @param columns The number of columns
+     *
+     * @return The padded message, or the message itself when it is wide enough
+     */
+    public static String padMessage(String message, int columns) {
+        return pad(message, ofMessage(message), columns);
+    }
+
+    private static String pad(String text, int width, int columns) {
+        if (width >= columns) {
+            return text;
+        }
+
+        StringBuilder padded = new StringBuilder(text.length() + columns - width).append(text);
+        for (int i = width; i < columns; i++) {
+            padded.append(' ');
+        }
+
+        return padded.toString();
+    }
+
+    /**
+     * Truncates a text to the given number of columns.
+     *
+     * Escape sequences are kept, and a wide character which would not fit
+     * entirely is left out.
+     *
+     * @param text    The text
+     * @param columns The number of columns
+     *
+     * @return The truncated text, or the text itself when it fits
+     */
+    public static String truncate(String text, int columns) {
+        int width = 0;
+        int length = text.length();
+
+        for (int i = 0; i < length;) {
+            char c = text.charAt(i);
+
+            if (ESCAPE == c) {
+                i = skipEscapeSequence(text, i, length);
+                continue;
+            }
+
+            int codePoint = Character.codePointAt(text, i);
+            width += of(codePoint);
+
+            if (width > columns) {
+                return text.substring(0, i);
+            }
+
+            i += Character.charCount(codePoint);
+        }
+
+        return text;
+    }
+
+    /**
+     * Gets the offset after an escape sequence.
+     *
+     * @param text  The text
+     * @param start Offset of the escape character
+     * @param end   Offset after the text
+     *
+     * @return The offset after the sequence
+     */
+    static int skipEscapeSequence(CharSequence text, int start, int end) {
+        int i = start + 1;
+
+        if (i < end && '[' == text.charAt(i)) {
+            // Control Sequence: parameters and intermediate bytes, then a final byte
+            for (i++; i < end; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x40 && c <= 0x7E) {
+                    return i + 1;
+                }
+            }
+
+            return end;
+        }
+
+        return Math.min(i + 1, end);
+    }
+}
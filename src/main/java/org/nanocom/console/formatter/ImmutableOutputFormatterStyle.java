@@ -0,0 +1,627 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Immutable formatter style.
+ *
+ * Colors are either named, indexes of the 256 colors palette ("0" to "255")
+ * or 24-bit colors ("#rrggbb"). Foreground, background and options are each
+ * packed in an int, and the escape sequences are computed once, when the
+ * style is built. Setters are not supported: use the with*() methods, which
+ * return a new style.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public final class ImmutableOutputFormatterStyle implements OutputFormatterStyleInterface {
+
+    /**
+     * The style without any color nor option.
+     */
+    public static final ImmutableOutputFormatterStyle EMPTY = new ImmutableOutputFormatterStyle(0, 0, 0);
+
+    private static final String END_SEQUENCE = "\033[0m";
+    private static final byte[] END_BYTES = toAscii(END_SEQUENCE);
+
+    // Colors: 0 for none, 1-8 for the named colors, PALETTE | index for the
+    // 256 colors palette and RGB | 0xrrggbb for 24-bit colors.
+    private static final int PALETTE = 0x100;
+    private static final int RGB = 0x1000000;
+    private static final int RGB_MASK = 0xFFFFFF;
+
+    // Up to 5 option indexes of 3 bits each, in the order they were set.
+    private static final int OPTION_BITS = 3;
+    private static final int OPTION_MASK = 0x7;
+
+    private static final int[] OPTION_CODES = {0, 1, 4, 5, 7, 8};
+    private static final int[] OPTION_OFF_CODES = {0, 22, 24, 25, 27, 28};
+    private static final int DEFAULT_FOREGROUND_CODE = 39;
+    private static final int DEFAULT_BACKGROUND_CODE = 49;
+
+    private static Map<String, Integer> availableForegroundColors = getAvailableForegroundColors();
+    private static Map<String, Integer> availableBackgroundColors = getAvailableBackgroundColors();
+    private static Map<String, Integer> availableOptions = getAvailableOptions();
+
+    private static Map<String, Integer> getAvailableForegroundColors() {
+        Map<String, Integer> foregrounds = new LinkedHashMap<String, Integer>();
+        foregrounds.put("black", 1);
+        foregrounds.put("red", 2);
+        foregrounds.put("green", 3);
+        foregrounds.put("yellow", 4);
+        foregrounds.put("blue", 5);
+        foregrounds.put("magenta", 6);
+        foregrounds.put("cyan", 7);
+        foregrounds.put("white", 8);
+
+        return foregrounds;
+    }
+
+    private static Map<String, Integer> getAvailableBackgroundColors() {
+        return getAvailableForegroundColors();
+    }
+
+    private static Map<String, Integer> getAvailableOptions() {
+        Map<String, Integer> options = new HashMap<String, Integer>();
+        options.put("bold", 1);
+        options.put("underscore", 2);
+        options.put("blink", 3);
+        options.put("reverse", 4);
+        options.put("conceal", 5);
+
+        return options;
+    }
+
+    private final int foreground;
+    private final int background;
+    private final int options;
+    private final String startSequence;
+    private final byte[] startBytes;
+
+    // The style reduced to each color depth, computed when first needed
+    private final ImmutableOutputFormatterStyle[] reduced = new ImmutableOutputFormatterStyle[ColorDepth.values().length];
+
+    /**
+     * Initializes output formatter style.
+     *
+     * @param foreground The style foreground color
+     * @param background The style background color
+     * @param options    The style options
+     *
+     * @throws IllegalArgumentException When a color or option name isn't defined
+     */
+    public ImmutableOutputFormatterStyle(String foreground, String background, String[] options) {
+        this(foregroundColor(foreground), backgroundColor(background), appendOptions(0, options));
+    }
+
+    /**
+     * Initializes output formatter style.
+     *
+     * @param foreground The style foreground color
+     * @param background The style background color
+     *
+     * @throws IllegalArgumentException When a color name isn't defined
+     */
+    public ImmutableOutputFormatterStyle(String foreground, String background) {
+        this(foreground, background, null);
+    }
+
+    /**
+     * Initializes output formatter style.
+     *
+     * @param foreground The style foreground color
+     *
+     * @throws IllegalArgumentException When the color name isn't defined
+     */
+    public ImmutableOutputFormatterStyle(String foreground) {
+        this(foreground, null);
+    }
+
+    /**
+     * Initializes output formatter style.
+     */
+    public ImmutableOutputFormatterStyle() {
+        this(0, 0, 0);
+    }
+
+    private ImmutableOutputFormatterStyle(int foreground, int background, int options) {
+        this.foreground = foreground;
+        this.background = background;
+        this.options = options;
+        this.startSequence = buildStartSequence(foreground, background, options);
+        this.startBytes = toAscii(startSequence);
+    }
+
+    /**
+     * Returns a copy of this style with another foreground color.
+     *
+     * @param color The color, null for none
+     *
+     * @return The new style
+     *
+     * @throws IllegalArgumentException When the color name isn't defined
+     */
+    public ImmutableOutputFormatterStyle withForeground(String color) {
+        return with(foregroundColor(color), background, options);
+    }
+
+    /**
+     * Returns a copy of this style with another background color.
+     *
+     * @param color The color, null for none
+     *
+     * @return The new style
+     *
+     * @throws IllegalArgumentException When the color name isn't defined
+     */
+    public ImmutableOutputFormatterStyle withBackground(String color) {
+        return with(foreground, backgroundColor(color), options);
+    }
+
+    /**
+     * Returns a copy of this style with an additional option.
+     *
+     * @param option The option name
+     *
+     * @return The new style
+     *
+     * @throws IllegalArgumentException When the option name isn't defined
+     */
+    public ImmutableOutputFormatterStyle withOption(String option) {
+        return with(foreground, background, appendOption(options, optionIndex(option)));
+    }
+
+    /**
+     * Returns a copy of this style without the given option.
+     *
+     * @param option The option name
+     *
+     * @return The new style
+     *
+     * @throws IllegalArgumentException When the option name isn't defined
+     */
+    public ImmutableOutputFormatterStyle withoutOption(String option) {
+        int index = optionIndex(option);
+        int result = 0;
+
+        for (int remaining = options; 0 != remaining; remaining >>>= OPTION_BITS) {
+            if (index != (remaining & OPTION_MASK)) {
+                result = appendOption(result, remaining & OPTION_MASK);
+            }
+        }
+
+        return with(foreground, background, result);
+    }
+
+    /**
+     * Returns a copy of this style with the given options only.
+     *
+     * @param options The option names
+     *
+     * @return The new style
+     *
+     * @throws IllegalArgumentException When an option name isn't defined
+     */
+    public ImmutableOutputFormatterStyle withOptions(String[] options) {
+        return with(foreground, background, appendOptions(0, options));
+    }
+
+    /**
+     * Returns a copy of this style whose colors are reduced to the closest
+     * ones available with the given color depth.
+     *
+     * Named colors are never reduced. The reduced style is kept, so that
+     * its escape sequences are computed only once.
+     *
+     * @param depth The color depth
+     *
+     * @return The reduced style, this style if it already fits
+     */
+    public ImmutableOutputFormatterStyle withColorDepth(ColorDepth depth) {
+        ImmutableOutputFormatterStyle style = reduced[depth.ordinal()];
+
+        if (null == style) {
+            // Styles are immutable: computing it twice is harmless
+            style = with(reduceColor(foreground, depth), reduceColor(background, depth), options);
+            reduced[depth.ordinal()] = style;
+        }
+
+        return style;
+    }
+
+    /**
+     * Gets the escape sequence that turns this style on.
+     *
+     * @return The escape sequence
+     */
+    public String getStartSequence() {
+        return startSequence;
+    }
+
+    /**
+     * Gets the escape sequence that resets the style.
+     *
+     * @return The escape sequence
+     */
+    public String getEndSequence() {
+        return END_SEQUENCE;
+    }
+
+    /**
+     * Gets the escape sequence that turns this style on, as ASCII bytes.
+     *
+     * The array is shared and must not be modified.
+     *
+     * @return The escape sequence
+     */
+    byte[] getStartBytes() {
+        return startBytes;
+    }
+
+    /**
+     * Gets the escape sequence that resets the style, as ASCII bytes.
+     *
+     * The array is shared and must not be modified.
+     *
+     * @return The escape sequence
+     */
+    byte[] getEndBytes() {
+        return END_BYTES;
+    }
+
+    /**
+     * Gets the shortest escape sequence that turns the given style into this
+     * one on a terminal.
+     *
+     * @param from The style currently applied, EMPTY if none
+     *
+     * @return The escape sequence, empty if both styles look the same
+     */
+    String getTransitionSequence(ImmutableOutputFormatterStyle from) {
+        if (isEmpty()) {
+            return from.isEmpty() ? "" : END_SEQUENCE;
+        }
+
+        if (from.isEmpty()) {
+            return startSequence;
+        }
+
+        StringBuilder sequence = new StringBuilder(16).append("\033[");
+        String separator = "";
+
+        if (foreground != from.foreground) {
+            if (0 == foreground) {
+                sequence.append(DEFAULT_FOREGROUND_CODE);
+            } else {
+                appendColor(sequence, foreground, false);
+            }
+            separator = ";";
+        }
+
+        if (background != from.background) {
+            sequence.append(separator);
+            if (0 == background) {
+                sequence.append(DEFAULT_BACKGROUND_CODE);
+            } else {
+                appendColor(sequence, background, true);
+            }
+            separator = ";";
+        }
+
+        int optionSet = optionSet(options);
+        int fromOptionSet = optionSet(from.options);
+        for (int index = 1; index < OPTION_CODES.length; index++) {
+            int flag = 1 << index;
+            if ((fromOptionSet & flag) != (optionSet & flag)) {
+                sequence.append(separator).append(0 == (optionSet & flag) ? OPTION_OFF_CODES[index] : OPTION_CODES[index]);
+                separator = ";";
+            }
+        }
+
+        if (0 == separator.length()) {
+            return "";
+        }
+
+        // Resetting everything may be shorter than turning attributes off one by one
+        String transition = sequence.append('m').toString();
+        if (transition.length() > startSequence.length() + 2) {
+            transition = "\033[0;" + startSequence.substring(2);
+        }
+
+        return transition;
+    }
+
+    /**
+     * Not supported, the style is immutable.
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void setForeground(String color) {
+        throw new UnsupportedOperationException("The style is immutable, use withForeground() instead.");
+    }
+
+    /**
+     * Not supported, the style is immutable.
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void setBackground(String color) {
+        throw new UnsupportedOperationException("The style is immutable, use withBackground() instead.");
+    }
+
+    /**
+     * Not supported, the style is immutable.
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void setOption(String option) {
+        throw new UnsupportedOperationException("The style is immutable, use withOption() instead.");
+    }
+
+    /**
+     * Not supported, the style is immutable.
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void unsetOption(String option) {
+        throw new UnsupportedOperationException("The style is immutable, use withoutOption() instead.");
+    }
+
+    /**
+     * Not supported, the style is immutable.
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void setOptions(String[] options) {
+        throw new UnsupportedOperationException("The style is immutable, use withOptions() instead.");
+    }
+
+    /**
+     * Applies the style to a given text.
+     *
+     * @param text The text to style
+     *
+     * @return
+     */
+    @Override
+    public String apply(String text) {
+        return startSequence + text + END_SEQUENCE;
+    }
+
+    @Override
+    public int hashCode() {
+        return (foreground * 31 + background) * 31 + options;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof ImmutableOutputFormatterStyle)) {
+            return false;
+        }
+
+        ImmutableOutputFormatterStyle style = (ImmutableOutputFormatterStyle) obj;
+
+        return foreground == style.foreground && background == style.background && options == style.options;
+    }
+
+    /**
+     * Gets the immutable form of a style, when it has one.
+     *
+     * @param style A style
+     *
+     * @return The immutable style, null if the style is a custom implementation
+     */
+    static ImmutableOutputFormatterStyle of(OutputFormatterStyleInterface style) {
+        if (style instanceof ImmutableOutputFormatterStyle) {
+            return (ImmutableOutputFormatterStyle) style;
+        }
+
+        if (null != style && OutputFormatterStyle.class == style.getClass()) {
+            return ((OutputFormatterStyle) style).toImmutable();
+        }
+
+        return null;
+    }
+
+    private boolean isEmpty() {
+        return 0 == foreground && 0 == background && 0 == options;
+    }
+
+    private ImmutableOutputFormatterStyle with(int foreground, int background, int options) {
+        if (foreground == this.foreground && background == this.background && options == this.options) {
+            return this;
+        }
+
+        return new ImmutableOutputFormatterStyle(foreground, background, options);
+    }
+
+    private static String buildStartSequence(int foreground, int background, int options) {
+        StringBuilder sequence = new StringBuilder(16).append("\033[");
+        String separator = "";
+
+        if (0 != foreground) {
+            appendColor(sequence, foreground, false);
+            separator = ";";
+        }
+
+        if (0 != background) {
+            appendColor(sequence.append(separator), background, true);
+            separator = ";";
+        }
+
+        for (int remaining = options; 0 != remaining; remaining >>>= OPTION_BITS) {
+            sequence.append(separator).append(OPTION_CODES[remaining & OPTION_MASK]);
+            separator = ";";
+        }
+
+        return sequence.append('m').toString();
+    }
+
+    private static void appendColor(StringBuilder sequence, int color, boolean background) {
+        if (0 != (color & RGB)) {
+            sequence.append(background ? "48;2;" : "38;2;")
+                .append(color >> 16 & 0xFF).append(';')
+                .append(color >> 8 & 0xFF).append(';')
+                .append(color & 0xFF);
+        } else if (0 != (color & PALETTE)) {
+            sequence.append(background ? "48;5;" : "38;5;").append(color & 0xFF);
+        } else {
+            sequence.append((background ? 39 : 29) + color);
+        }
+    }
+
+    private static int reduceColor(int color, ColorDepth depth) {
+        if (ColorDepth.TRUE_COLOR == depth || 0 == color || (0 == (color & RGB) && 0 == (color & PALETTE))) {
+            return color;
+        }
+
+        int index = 0 == (color & RGB) ? color & 0xFF : ColorTables.toPalette(color & RGB_MASK);
+
+        return ColorDepth.INDEXED == depth ? PALETTE | index : 1 + ColorTables.toBasic(index);
+    }
+
+    private static byte[] toAscii(String sequence) {
+        byte[] bytes = new byte[sequence.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) sequence.charAt(i);
+        }
+
+        return bytes;
+    }
+
+    private static int optionSet(int options) {
+        int set = 0;
+        for (int remaining = options; 0 != remaining; remaining >>>= OPTION_BITS) {
+            set |= 1 << (remaining & OPTION_MASK);
+        }
+
+        return set;
+    }
+
+    private static int appendOptions(int packed, String[] options) {
+        if (null != options) {
+            for (String option : options) {
+                packed = appendOption(packed, optionIndex(option));
+            }
+        }
+
+        return packed;
+    }
+
+    private static int appendOption(int options, int index) {
+        int shift = 0;
+        for (int remaining = options; 0 != remaining; remaining >>>= OPTION_BITS) {
+            if (index == (remaining & OPTION_MASK)) {
+                return options;
+            }
+            shift += OPTION_BITS;
+        }
+
+        return options | index << shift;
+    }
+
+    private static int foregroundColor(String color) {
+        int code = parseColor(color, availableForegroundColors);
+
+        if (code < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid foreground color specified: \"%s\". Expected one of (%s), an index from 0 to 255 or #rrggbb",
+                color,
+                StringUtils.join(availableForegroundColors.keySet(), ", ")
+            ));
+        }
+
+        return code;
+    }
+
+    private static int backgroundColor(String color) {
+        int code = parseColor(color, availableBackgroundColors);
+
+        if (code < 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid background color specified: \"%s\". Expected one of (%s), an index from 0 to 255 or #rrggbb",
+                color,
+                StringUtils.join(availableBackgroundColors.keySet(), ", ")
+            ));
+        }
+
+        return code;
+    }
+
+    /**
+     * Gets the code of a color.
+     *
+     * @return The code, -1 if the color is invalid
+     */
+    private static int parseColor(String color, Map<String, Integer> names) {
+        if (null == color) {
+            return 0;
+        }
+
+        Integer named = names.get(color);
+        if (null != named) {
+            return named;
+        }
+
+        int length = color.length();
+
+        if (7 == length && '#' == color.charAt(0)) {
+            int rgb = 0;
+            for (int i = 1; i < length; i++) {
+                char c = color.charAt(i);
+                int digit = c < 0x80 ? Character.digit(c, 16) : -1;
+                if (digit < 0) {
+                    return -1;
+                }
+                rgb = rgb << 4 | digit;
+            }
+
+            return RGB | rgb;
+        }
+
+        if (length > 0 && length <= 3) {
+            int index = 0;
+            for (int i = 0; i < length; i++) {
+                char c = color.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                index = index * 10 + c - '0';
+            }
+
+            return index < 256 ? PALETTE | index : -1;
+        }
+
+        return -1;
+    }
+
+    private static int optionIndex(String option) {
+        if (!availableOptions.containsKey(option)) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid option specified: \"%s\". Expected one of (%s)",
+                option,
+                StringUtils.join(availableOptions.keySet(), ", ")
+            ));
+        }
+
+        return availableOptions.get(option);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes the text appended to it directly into a file, through a window
+ * mapped in memory.
+ *
+ * When the window is full, the next one is mapped after it, which extends
+ * the file: no bytes are copied nor written by a system call, the pages are
+ * written back to the disk by the operating system. As the file grows by
+ * whole windows, close() truncates it to the bytes actually appended.
+ *
+ * The windows are only unmapped once they are garbage collected: the file
+ * stays padded with zeros up to the end of the last window when the sink is
+ * not closed, as after a crash, and on Windows close() may fail to truncate
+ * a file still mapped.
+ *
+ * A sink is not thread-safe.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class MappedFileSink extends ByteSink {
+
+    /**
+     * The default size of the window, in bytes.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private MappedByteBuffer window;
+
+    // Position of the window in the file
+    private long offset;
+
+    // Length of the file while no window is mapped
+    private long length;
+
+    /**
+     * Constructor.
+     *
+     * @param channel    The channel of the file, opened for reading and writing
+     * @param offset     The position in the file to append the bytes from
+     * @param charset    The charset of the file
+     * @param windowSize The size of the window, in bytes
+     *
+     * @throws IOException When the file can not be mapped
+     */
+    public MappedFileSink(FileChannel channel, long offset, Charset charset, int windowSize) throws IOException {
+        this(channel, offset, charset, windowSize, map(channel, offset, windowSize));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel of the file, opened for reading and writing
+     * @param offset  The position in the file to append the bytes from
+     * @param charset The charset of the file
+     *
+     * @throws IOException When the file can not be mapped
+     */
+    public MappedFileSink(FileChannel channel, long offset, Charset charset) throws IOException {
+        this(channel, offset, charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    private MappedFileSink(FileChannel channel, long offset, Charset charset, int windowSize, MappedByteBuffer window) {
+        super(charset, window);
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.window = window;
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the number of bytes in the file, up to the last byte appended.
+     *
+     * @return The length of the file
+     */
+    public long getLength() {
+        return null == window ? length : offset + window.position();
+    }
+
+    /**
+     * Does nothing: the bytes are in the file as soon as they are appended.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Truncates the file to the bytes appended and closes it.
+     *
+     * The window is dropped first: the sink can not be written anymore, as
+     * the pages past the end of the file may not be accessed.
+     *
+     * @throws IOException When the file can not be truncated
+     */
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        length = getLength();
+        window = null;
+
+        try {
+            channel.truncate(length);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void writeBuffers(ByteBuffer... buffers) throws IOException {
+        checkOpen();
+
+        for (ByteBuffer bytes : buffers) {
+            if (bytes == window) {
+                // Already in the file
+                offset += bytes.remaining();
+                bytes.position(bytes.limit());
+                continue;
+            }
+
+            while (bytes.hasRemaining()) {
+                int length = Math.min(bytes.remaining(), windowSize);
+                ByteBuffer chunk = bytes.duplicate();
+                chunk.limit(chunk.position() + length);
+                map(channel, offset, length).put(chunk);
+                bytes.position(chunk.position());
+                offset += length;
+            }
+        }
+    }
+
+    /**
+     * Maps the window following the bytes written.
+     *
+     * @param written The previous window
+     *
+     * @return The new window
+     *
+     * @throws IOException When the file can not be mapped
+     */
+    @Override
+    protected ByteBuffer nextBuffer(ByteBuffer written) throws IOException {
+        checkOpen();
+
+        // The previous window takes no more bytes, even if the next one can
+        // not be mapped
+        length = offset;
+        window = null;
+        window = map(channel, offset, windowSize);
+
+        return window;
+    }
+
+    private void checkOpen() throws IOException {
+        if (null == window) {
+            throw new IOException(channel.isOpen() ? "The file could not be mapped." : "The file is closed.");
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, int size) throws IOException {
+        // Mapping a region past the end of the file extends it
+        return channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+    }
+}
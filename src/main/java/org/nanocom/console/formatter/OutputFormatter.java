@@ -7,34 +7,55 @@
 
 package org.nanocom.console.formatter;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import static org.apache.commons.lang3.StringUtils.*;
 
 /**
  * Formatter class for console output.
  *
+ * Formatting keeps no state in the formatter, so that a formatter can be
+ * shared by several threads: styles opened by a message are closed at its
+ * end, and styles may be set while other threads are formatting.
+ *
  * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
  */
 public class OutputFormatter implements OutputFormatterInterface {
 
     /**
-     * The pattern to phrase the format.
+     * The pattern for style.
      */
-    private static Pattern FORMAT_PATTERN = Pattern.compile("<(/?)([a-z][a-z0-9_=;-]+)?>([^<]*)", Pattern.CASE_INSENSITIVE);
+    private static Pattern STYLE_PATTERN = Pattern.compile("([^=]+)=([^;]+)(;|$)", Pattern.CASE_INSENSITIVE);
 
     /**
-     * The pattern for style.
+     * The maximum number of inline styles kept by inlineStyles.
      */
-    private static Pattern STYLE_PATTERN = Pattern.compile("([^=]+)=([^;]+)(;|$)", Pattern.CASE_INSENSITIVE);
+    private static final int MAX_INLINE_STYLES = 1024;
 
-    private Boolean decorated;
-    private Map<String, OutputFormatterStyleInterface> styles = new HashMap<String, OutputFormatterStyleInterface>();
-    private OutputFormatterStyleStack styleStack;
+    /**
+     * Marks the strings which are not inline styles in inlineStyles.
+     */
+    private static final ImmutableOutputFormatterStyle NOT_A_STYLE = new ImmutableOutputFormatterStyle();
+
+    /**
+     * Inline styles ("fg=blue;bg=red") already parsed, by their lower case string.
+     */
+    private static ConcurrentMap<String, ImmutableOutputFormatterStyle> inlineStyles = new ConcurrentHashMap<String, ImmutableOutputFormatterStyle>();
+
+    private volatile boolean decorated;
+    private volatile boolean compact = false;
+    private volatile ColorDepth colorDepth = ColorDepth.TRUE_COLOR;
+    private final ConcurrentMap<String, OutputFormatterStyleInterface> styles = new ConcurrentHashMap<String, OutputFormatterStyleInterface>();
+    private volatile FormatCache cache;
+    private final AtomicInteger generation = new AtomicInteger();
 
     /**
      * Escapes "<" special char in given text.
@@ -44,7 +65,72 @@ public class OutputFormatter implements OutputFormatterInterface {
      * @return Escaped text
      */
     public static String escape(String text) {
-        return text.replaceAll("([^\\\\\\\\]?)<", "$1\\\\<");
+        if (text.indexOf('<') < 0) {
+            return text;
+        }
+
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+
+        try {
+            escapeTo(text, 0, text.length(), escaped);
+        } catch (IOException e) {
+            // Never thrown by a StringBuilder
+            throw new IllegalStateException(e);
+        }
+
+        return escaped.toString();
+    }
+
+    /**
+     * Escapes "<" special char in given text, writing the escaped text to the
+     * given appendable.
+     *
+     * @param text Text to escape
+     * @param out  Where to write the escaped text
+     *
+     * @throws IOException When the appendable can not be written
+     */
+    public static void escapeTo(CharSequence text, Appendable out) throws IOException {
+        escapeTo(text, 0, text.length(), out);
+    }
+
+    /**
+     * Escapes "<" special char in a range of given text, writing the escaped
+     * text to the given appendable.
+     *
+     * The output is the one of the regular expression previously used: a
+     * backslash is put before each "<", but a "<" directly followed by
+     * another one may be left as it is ("<<" gives "<\<").
+     *
+     * @param text  Text to escape
+     * @param start Offset of the range in the text
+     * @param end   Offset after the range in the text
+     * @param out   Where to write the escaped text
+     *
+     * @throws IOException When the appendable can not be written
+     */
+    public static void escapeTo(CharSequence text, int start, int end, Appendable out) throws IOException {
+        int last = start;
+        int i = start;
+
+        while (i < end) {
+            char c = text.charAt(i);
+
+            if (i + 1 < end && '\\' != c && '<' == text.charAt(i + 1)) {
+                // The character before "<" is consumed with it
+                out.append(text, last, i + 1).append('\\');
+                last = i + 1;
+                i += 2;
+            } else if ('<' == c) {
+                out.append(text, last, i).append('\\');
+                last = i;
+                i++;
+            } else {
+                i++;
+            }
+        }
+
+        out.append(text, last, end);
     }
 
     /**
@@ -84,8 +170,6 @@ public class OutputFormatter implements OutputFormatterInterface {
         for (Entry<String, OutputFormatterStyleInterface> style : styles.entrySet()) {
             setStyle(style.getKey(), style.getValue());
         }
-
-        styleStack = new OutputFormatterStyleStack();
     }
 
     /**
@@ -95,7 +179,10 @@ public class OutputFormatter implements OutputFormatterInterface {
      */
     @Override
     public void setDecorated(boolean decorated) {
-        this.decorated = decorated;
+        if (decorated != this.decorated) {
+            this.decorated = decorated;
+            clearCache();
+        }
     }
 
     /**
@@ -108,15 +195,75 @@ public class OutputFormatter implements OutputFormatterInterface {
         return decorated;
     }
 
+    /**
+     * Sets whether escape sequences are kept to the minimum.
+     *
+     * By default each styled text is surrounded by the sequence turning its
+     * style on and a reset. A compact formatter rather keeps track of the
+     * attributes in effect while it formats a message: it only outputs the
+     * attributes which change from one text to the next, and nothing between
+     * texts having the same style. The message looks the same on a terminal.
+     *
+     * @param compact Whether to minimize escape sequences or not
+     */
+    public void setCompact(boolean compact) {
+        if (compact != this.compact) {
+            this.compact = compact;
+            clearCache();
+        }
+    }
+
+    /**
+     * Gets the compact flag.
+     *
+     * @return True if escape sequences are kept to the minimum, false otherwise
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Sets the number of colors the terminal can display.
+     *
+     * Colors of the styles are reduced to the closest ones available. Named
+     * colors are always available. Templates already compiled are not
+     * affected.
+     *
+     * @param colorDepth The color depth, TRUE_COLOR by default
+     */
+    @Override
+    public void setColorDepth(ColorDepth colorDepth) {
+        if (colorDepth != this.colorDepth) {
+            this.colorDepth = colorDepth;
+            clearCache();
+        }
+    }
+
+    /**
+     * Gets the number of colors the terminal can display.
+     *
+     * @return The color depth
+     */
+    @Override
+    public ColorDepth getColorDepth() {
+        return colorDepth;
+    }
+
     /**
      * Sets a new style.
      *
      * @param name  The style name
-     * @param style The style instance
+     * @param style The style instance, null to remove the style
      */
     @Override
     public void setStyle(String name, OutputFormatterStyleInterface style) {
-        styles.put(name, style);
+        if (null == style) {
+            styles.remove(name);
+        } else {
+            styles.put(name, style);
+        }
+
+        clearCache();
     }
 
     /**
@@ -149,6 +296,97 @@ public class OutputFormatter implements OutputFormatterInterface {
         return styles.get(name);
     }
 
+    /**
+     * Sets the maximum number of formatted messages to keep.
+     *
+     * Formatting the same message again then returns the styled message
+     * computed the first time, the least recently used messages being
+     * discarded first. The cache is cleared when a style is set or when the
+     * decorated flag changes; call clearCache() after modifying a style in
+     * place. Threads sharing the formatter briefly lock the cache to look
+     * messages up.
+     *
+     * @param size The maximum number of messages, 0 to disable the cache
+     */
+    public void setCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The cache size must be positive.");
+        }
+
+        cache = 0 == size ? null : new FormatCache(size);
+    }
+
+    /**
+     * Gets the maximum number of formatted messages to keep.
+     *
+     * @return The cache size, 0 if the cache is disabled
+     */
+    public int getCacheSize() {
+        FormatCache cache = this.cache;
+
+        return null == cache ? 0 : cache.size;
+    }
+
+    /**
+     * Discards the formatted messages kept so far, and the templates
+     * compiled by the outputs using the formatter.
+     */
+    public void clearCache() {
+        generation.incrementAndGet();
+
+        FormatCache cache = this.cache;
+
+        if (null != cache) {
+            synchronized (cache) {
+                cache.clear();
+                cache.generation++;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Gets the number of messages found in the cache since it was enabled.
+     *
+     * @return The number of cache hits
+     */
+    public long getCacheHits() {
+        FormatCache cache = this.cache;
+
+        if (null == cache) {
+            return 0;
+        }
+
+        synchronized (cache) {
+            return cache.hits;
+        }
+    }
+
+    /**
+     * Gets the number of messages formatted while the cache was enabled
+     * because they were not found in it.
+     *
+     * @return The number of cache misses
+     */
+    public long getCacheMisses() {
+        FormatCache cache = this.cache;
+
+        if (null == cache) {
+            return 0;
+        }
+
+        synchronized (cache) {
+            return cache.misses;
+        }
+    }
+
     /**
      * Formats a message according to the given styles.
      *
@@ -158,59 +396,311 @@ public class OutputFormatter implements OutputFormatterInterface {
      */
     @Override
     public String format(String message) {
-        return new CallbackMatcher(FORMAT_PATTERN).replaceMatches(message, new Callback() {
+        if (message.indexOf('<') < 0) {
+            return message;
+        }
+
+        if (!decorated) {
+            return strip(message);
+        }
 
-            @Override
-            public String foundMatch(MatchResult matchResult) {
-                return replaceStyle(matchResult);
+        FormatCache cache = this.cache;
+
+        if (null == cache) {
+            return doFormat(message);
+        }
+
+        CacheKey key = new CacheKey(message, decorated);
+        String formatted;
+        int generation;
+
+        synchronized (cache) {
+            formatted = cache.get(key);
+
+            if (null != formatted) {
+                cache.hits++;
+
+                return formatted;
+            }
+
+            cache.misses++;
+            generation = cache.generation;
+        }
+
+        formatted = doFormat(message);
+
+        synchronized (cache) {
+            // Styles may have changed while the message was formatted
+            if (generation == cache.generation) {
+                cache.put(key, formatted);
             }
-        });
+        }
+
+        return formatted;
+    }
+
+    private String doFormat(String message) {
+        StringBuilder formatted = new StringBuilder(message.length() + 32);
+
+        try {
+            doFormatTo(message, formatted);
+        } catch (IOException e) {
+            // Never thrown by a StringBuilder
+            throw new IllegalStateException(e);
+        }
+
+        return formatted.toString();
     }
 
     /**
-     * Replaces style of the output.
+     * Formats a message according to the given styles, writing the styled
+     * message to the given appendable as it goes.
      *
-     * @param match
+     * @param message The message to style
+     * @param out     Where to write the styled message
      *
-     * @return The replaced style
+     * @throws IOException When the appendable can not be written
      */
-    private String replaceStyle(MatchResult matchResult) {
-        String match0 = defaultString(matchResult.group(0));
-        String match1 = defaultString(matchResult.group(1));
-        String match2 = defaultString(matchResult.group(2));
-        String match3 = defaultString(matchResult.group(3));
+    @Override
+    public void formatTo(CharSequence message, Appendable out) throws IOException {
+        if (!decorated) {
+            doStripTo(message, out);
+        } else if (null != cache && message instanceof String) {
+            out.append(format((String) message));
+        } else {
+            doFormatTo(message, out);
+        }
+    }
 
-        if (EMPTY.equals(match2)) {
-            if ("/".equals(match1)) {
+    /**
+     * Formats a message once, writing the styled message to an appendable
+     * and the message without its style tags to another.
+     *
+     * @param message The message to style
+     * @param out     Where to write the styled message
+     * @param plain   Where to write the message without style tags
+     *
+     * @throws IOException When an appendable can not be written
+     */
+    @Override
+    public void formatTo(CharSequence message, Appendable out, Appendable plain) throws IOException {
+        new OutputFormatterStream(this, out, plain, decorated, compact, colorDepth).write(message).end();
+    }
+
+    private void doFormatTo(CharSequence message, Appendable out) throws IOException {
+        // Read the flags once, they may be changed by another thread meanwhile
+        new OutputFormatterStream(this, out, decorated, compact, colorDepth).write(message).end();
+    }
+
+    /**
+     * Begins a message to be formatted in several chunks.
+     *
+     * Unlike formatTo(), the chunks are not cached.
+     *
+     * @param out Where to write the formatted message
+     *
+     * @return The stream to write the chunks to
+     */
+    @Override
+    public OutputFormatterStream begin(Appendable out) {
+        return new OutputFormatterStream(this, out, decorated, compact, colorDepth);
+    }
+
+    /**
+     * Removes the style tags from a message.
+     *
+     * Tags which are not style tags are kept, as format() does. Unlike
+     * format(), incorrectly nested tags are not reported.
+     *
+     * @param message The message to strip
+     *
+     * @return The message without style tags
+     */
+    @Override
+    public String strip(String message) {
+        if (message.indexOf('<') < 0) {
+            return message;
+        }
+
+        StringBuilder stripped = new StringBuilder(message.length());
+
+        try {
+            doStripTo(message, stripped);
+        } catch (IOException e) {
+            // Never thrown by a StringBuilder
+            throw new IllegalStateException(e);
+        }
+
+        return stripped.toString();
+    }
+
+    private void doStripTo(CharSequence message, Appendable out) throws IOException {
+        OutputFormatterTokenizer tokenizer = new OutputFormatterTokenizer(message);
+
+        while (tokenizer.next()) {
+            if (tokenizer.isTag() && isStyleTag(tokenizer)) {
+                out.append(message, tokenizer.getTextStart(), tokenizer.getEnd());
+            } else {
+                out.append(message, tokenizer.getStart(), tokenizer.getEnd());
+            }
+        }
+    }
+
+    /**
+     * Checks whether a tag is replaced by a style, without resolving the style.
+     *
+     * @param tag The tokenizer, positioned on a tag
+     *
+     * @return True if the tag is a style tag, false if it must be output as it is
+     */
+    boolean isStyleTag(OutputFormatterTokenizer tag) {
+        if (tag.isAnonymous()) {
+            return tag.isClosing();
+        }
+
+        String name = tag.getName();
+
+        return isInlineStyle(name) || styles.containsKey(name.toLowerCase());
+    }
+
+    /**
+     * Checks whether a tag name is an inline style, without parsing it.
+     *
+     * @param name A tag name
+     *
+     * @return True if the name matches STYLE_PATTERN
+     */
+    static boolean isInlineStyle(String name) {
+        // A "=" with a key before it and a value after it
+        for (int i = name.indexOf('=', 1); i > 0; i = name.indexOf('=', i + 1)) {
+            if ('=' != name.charAt(i - 1) && i + 1 < name.length() && ';' != name.charAt(i + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compiles a message template.
+     *
+     * The template is a format string as understood by String.format(),
+     * containing style tags. Tags are parsed and styles resolved once, here,
+     * so that the template can then be rendered many times.
+     *
+     * @param template The template
+     *
+     * @return The compiled template
+     *
+     * @throws IllegalArgumentException When style tags are incorrectly nested
+     * @throws java.util.IllegalFormatException When the template contains an invalid format specifier
+     */
+    @Override
+    public OutputFormatterTemplate compile(String template) {
+        OutputFormatterTemplate compiled = new OutputFormatterTemplate(this);
+        OutputFormatterStyleStack stack = new OutputFormatterStyleStack(ImmutableOutputFormatterStyle.EMPTY);
+        OutputFormatterTokenizer tokenizer = new OutputFormatterTokenizer(template);
+        ColorDepth colorDepth = this.colorDepth;
+
+        while (tokenizer.next()) {
+            OutputFormatterStyleInterface style = tokenizer.isTag() ? replaceStyle(tokenizer, stack) : null;
+
+            if (null == style) {
+                compiled.addText(null, template.substring(tokenizer.getStart(), tokenizer.getEnd()));
+            } else {
+                compiled.addText(reduce(style, colorDepth), template.substring(tokenizer.getTextStart(), tokenizer.getEnd()));
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Replaces style of the output.
+     *
+     * @param tag   The tokenizer, positioned on a tag
+     * @param stack The stack of opened styles
+     *
+     * @return The style to apply to the text following the tag, null if the
+     *         tag is not a style tag and must be output as it is
+     */
+    OutputFormatterStyleInterface replaceStyle(OutputFormatterTokenizer tag, OutputFormatterStyleStack stack) {
+        if (tag.isAnonymous()) {
+            if (tag.isClosing()) {
                 // Closing tag ("</>")
-                styleStack.pop();
+                stack.pop();
 
-                return applyStyle(styleStack.getCurrent(), match3);
+                return stack.getCurrent();
             }
 
             // Opening tag ("<>")
-            return "<>" + match3;
+            return null;
         }
 
-        OutputFormatterStyleInterface locStyle;
+        String name = tag.getName().toLowerCase();
+        OutputFormatterStyleInterface locStyle = styles.get(name);
 
-        if (null != styles.get(match2.toLowerCase())) {
-            locStyle = styles.get(match2.toLowerCase());
-        } else {
-            locStyle = createStyleFromString(match2);
+        if (null == locStyle) {
+            locStyle = getInlineStyle(name);
 
             if (null == locStyle) {
-                return match0;
+                return null;
             }
         }
 
-        if ("/".equals(match1)) {
-            styleStack.pop(locStyle);
+        if (tag.isClosing()) {
+            stack.pop(locStyle);
         } else {
-            styleStack.push(locStyle);
+            stack.push(locStyle);
+        }
+
+        return stack.getCurrent();
+    }
+
+    /**
+     * Reduces the colors of a style to a color depth.
+     *
+     * @param style      A style
+     * @param colorDepth The color depth
+     *
+     * @return The reduced style, or the style itself if it is a custom
+     *         implementation
+     */
+    static OutputFormatterStyleInterface reduce(OutputFormatterStyleInterface style, ColorDepth colorDepth) {
+        if (ColorDepth.TRUE_COLOR == colorDepth) {
+            return style;
+        }
+
+        ImmutableOutputFormatterStyle immutable = ImmutableOutputFormatterStyle.of(style);
+
+        return null == immutable ? style : immutable.withColorDepth(colorDepth);
+    }
+
+    /**
+     * Gets the style described by an inline style string, parsing the
+     * string only the first time it is met.
+     *
+     * @param string A lower case string
+     *
+     * @return Null if string is not format string
+     */
+    private static ImmutableOutputFormatterStyle getInlineStyle(String string) {
+        ImmutableOutputFormatterStyle style = inlineStyles.get(string);
+
+        if (null == style) {
+            style = createStyleFromString(string);
+
+            if (null == style) {
+                style = NOT_A_STYLE;
+            }
+
+            // Tags are user input: stop remembering them rather than grow forever
+            if (inlineStyles.size() < MAX_INLINE_STYLES) {
+                inlineStyles.putIfAbsent(string, style);
+            }
         }
 
-        return applyStyle(styleStack.getCurrent(), match3);
+        return NOT_A_STYLE == style ? null : style;
     }
 
     /**
@@ -219,11 +709,13 @@ public class OutputFormatter implements OutputFormatterInterface {
      * @param string
      *
      * @return Null if string is not format string
+     *
+     * @throws IllegalArgumentException When a color or option name isn't defined
      */
-    private OutputFormatterStyle createStyleFromString(String string) {
-        Matcher matcher = STYLE_PATTERN.matcher(string.toLowerCase());
+    private static ImmutableOutputFormatterStyle createStyleFromString(String string) {
+        Matcher matcher = STYLE_PATTERN.matcher(string);
 
-        OutputFormatterStyle style = new OutputFormatterStyle();
+        ImmutableOutputFormatterStyle style = ImmutableOutputFormatterStyle.EMPTY;
         MatchResult result;
 
         if (!matcher.find()) {
@@ -232,15 +724,13 @@ public class OutputFormatter implements OutputFormatterInterface {
 
         do {
             result = matcher.toMatchResult();
-            String match1 = result.group(1); // fg
-            String match2 = result.group(2); // blue
 
             if ("fg".equals(result.group(1))) {
-                style.setForeground(result.group(2));
+                style = style.withForeground(result.group(2));
             } else if ("bg".equals(result.group(1))) {
-                style.setBackground(result.group(2));
+                style = style.withBackground(result.group(2));
             } else {
-                style.setOption(result.group(2));
+                style = style.withOption(result.group(2));
             }
         } while (matcher.find());
 
@@ -250,41 +740,86 @@ public class OutputFormatter implements OutputFormatterInterface {
     /**
      * Applies style to text if must be applied.
      *
-     * @param style Style to apply
-     * @param text  Input text
-     *
-     * @return Styled text
+     * @param style     Style to apply
+     * @param decorated Whether to decorate the text or not
+     * @param message   Input message
+     * @param start     Offset of the text in the message
+     * @param end       Offset after the text in the message
+     * @param out       Where to write the styled text
      */
-    private String applyStyle(OutputFormatterStyleInterface style, String text) {
-        return isDecorated() && isNotEmpty(text) ? style.apply(text) : text;
-    }
+    void applyStyle(OutputFormatterStyleInterface style, boolean decorated, CharSequence message, int start, int end, Appendable out) throws IOException {
+        if (start == end) {
+            return;
+        }
+
+        if (decorated) {
+            ImmutableOutputFormatterStyle immutable = ImmutableOutputFormatterStyle.of(style);
 
-    interface Callback {
-        String foundMatch(MatchResult matchResult);
+            if (null == immutable) {
+                out.append(style.apply(message.subSequence(start, end).toString()));
+            } else {
+                if (out instanceof ByteSink) {
+                    // The sequences are already encoded
+                    ((ByteSink) out).write(immutable.getStartBytes()).append(message, start, end).write(immutable.getEndBytes());
+                } else {
+                    out.append(immutable.getStartSequence()).append(message, start, end).append(immutable.getEndSequence());
+                }
+            }
+        } else {
+            out.append(message, start, end);
+        }
     }
 
     /**
-     * TODO Delete this unuseful class
+     * Key of a formatted message in the cache.
      */
-    class CallbackMatcher {
+    private static class CacheKey {
 
-        private Pattern pattern;
+        private final String message;
+        private final boolean decorated;
 
-        public CallbackMatcher(Pattern pattern) {
-            this.pattern = pattern;
+        CacheKey(String message, boolean decorated) {
+            this.message = message;
+            this.decorated = decorated;
         }
 
-        public String replaceMatches(String stringToMatch, Callback callback) {
-            Matcher matcher = pattern.matcher(stringToMatch);
-            StringBuffer sb = new StringBuffer();
+        @Override
+        public int hashCode() {
+            return decorated ? ~message.hashCode() : message.hashCode();
+        }
 
-            while (matcher.find()) {
-                MatchResult matchResult = matcher.toMatchResult();
-                matcher.appendReplacement(sb, Matcher.quoteReplacement(callback.foundMatch(matchResult)));
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
             }
-            matcher.appendTail(sb);
 
-            return sb.toString();
+            CacheKey other = (CacheKey) obj;
+
+            return decorated == other.decorated && message.equals(other.message);
+        }
+    }
+
+    /**
+     * Formatted messages, least recently used first.
+     */
+    private static class FormatCache extends LinkedHashMap<CacheKey, String> {
+
+        static final long serialVersionUID = 6109876392735584018L;
+
+        private final int size;
+        private long hits = 0;
+        private long misses = 0;
+        private int generation = 0;
+
+        FormatCache(int size) {
+            super(16, 0.75f, true);
+            this.size = size;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, String> eldest) {
+            return size() > size;
         }
     }
 }
@@ -7,6 +7,8 @@
 
 package org.nanocom.console.formatter;
 
+import java.io.IOException;
+
 /**
  * Formatter interface for console output.
  * 
@@ -28,6 +30,20 @@ public interface OutputFormatterInterface {
      */
     boolean isDecorated();
 
+    /**
+     * Sets the number of colors the terminal can display.
+     *
+     * @param colorDepth The color depth
+     */
+    void setColorDepth(ColorDepth colorDepth);
+
+    /**
+     * Gets the number of colors the terminal can display.
+     *
+     * @return The color depth
+     */
+    ColorDepth getColorDepth();
+
     /**
      * Sets a new style.
      *
@@ -62,4 +78,67 @@ public interface OutputFormatterInterface {
      * @return The styled message
      */
     String format(String message);
+
+    /**
+     * Formats a message according to the given styles, writing the styled
+     * message to the given appendable instead of returning it.
+     *
+     * @param message The message to style
+     * @param out     Where to write the styled message
+     *
+     * @throws IOException When the appendable can not be written
+     */
+    void formatTo(CharSequence message, Appendable out) throws IOException;
+
+    /**
+     * Formats a message once, writing the styled message to an appendable
+     * and the message without its style tags, as strip() returns it, to
+     * another.
+     *
+     * @param message The message to style
+     * @param out     Where to write the styled message
+     * @param plain   Where to write the message without style tags
+     *
+     * @throws IOException When an appendable can not be written
+     */
+    void formatTo(CharSequence message, Appendable out, Appendable plain) throws IOException;
+
+    /**
+     * Begins a message to be formatted in several chunks, the styles and
+     * tags being carried over from one chunk to the next.
+     *
+     * @param out Where to write the formatted message
+     *
+     * @return The stream to write the chunks to
+     */
+    OutputFormatterStream begin(Appendable out);
+
+    /**
+     * Removes the style tags from a message, as format() does when the
+     * formatter is not decorated.
+     *
+     * @param message The message to strip
+     *
+     * @return The message without style tags
+     */
+    String strip(String message);
+
+    /**
+     * Compiles a message template, so that it can be rendered many times
+     * without parsing its tags again.
+     *
+     * @param template A String.format() format string containing style tags
+     *
+     * @return The compiled template
+     */
+    OutputFormatterTemplate compile(String template);
+
+    /**
+     * Gets a number which changes whenever messages may be formatted
+     * differently: when a style is set, or when the decorated flag or the
+     * color depth changes. Templates compiled before are then outdated.
+     *
+     * @return The generation of the formatter
+     */
+    int getGeneration();
 }
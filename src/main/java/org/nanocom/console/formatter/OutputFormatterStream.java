@@ -0,0 +1,299 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Formats a message written in several chunks.
+ *
+ *     OutputFormatterStream stream = formatter.begin(out);
+ *     stream.write("<info>a long");
+ *     stream.write(" message</info> <comm");
+ *     stream.write("ent>in chunks</comment>");
+ *     stream.end();
+ *
+ * The chunks are formatted as one message: styles opened by a chunk apply to
+ * the following ones, and a tag cut between two chunks is kept until it can
+ * be read entirely. Everything else is written to the appendable as soon as
+ * it is read.
+ *
+ * The decorated and compact flags and the color depth of the formatter are
+ * read when the stream begins. A stream is not thread-safe.
+ *
+ * A stream may also write the message without its style tags to a second
+ * appendable, from the same reading of the tags.
+ *
+ * Outputs format this way the messages written between their begin() and
+ * end() methods, into their own buffers.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public final class OutputFormatterStream implements Flushable {
+
+    private final OutputFormatter formatter;
+    private final Appendable out;
+    private final Appendable plain;
+    private final boolean decorated;
+    private final boolean compact;
+    private final ColorDepth colorDepth;
+
+    private final OutputFormatterStyleStack styleStack = new OutputFormatterStyleStack(ImmutableOutputFormatterStyle.EMPTY);
+    private final StringBuilder pending = new StringBuilder();
+
+    // The style of the text being read, null for raw text
+    private OutputFormatterStyleInterface textStyle = null;
+    // The style the terminal is in, in compact mode
+    private ImmutableOutputFormatterStyle current = ImmutableOutputFormatterStyle.EMPTY;
+    private boolean ended = false;
+
+    /**
+     * Constructor.
+     *
+     * @param formatter  The formatter which resolves the styles
+     * @param out        Where to write the formatted message
+     * @param decorated  Whether to decorate the message or to strip its tags
+     * @param compact    Whether to emit minimal escape sequences
+     * @param colorDepth The color depth the styles are reduced to
+     */
+    OutputFormatterStream(OutputFormatter formatter, Appendable out, boolean decorated, boolean compact, ColorDepth colorDepth) {
+        this(formatter, out, null, decorated, compact, colorDepth);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param formatter  The formatter which resolves the styles
+     * @param out        Where to write the formatted message
+     * @param plain      Where to write the message without its style tags,
+     *                   or null
+     * @param decorated  Whether to decorate the message or to strip its tags
+     * @param compact    Whether to emit minimal escape sequences
+     * @param colorDepth The color depth the styles are reduced to
+     */
+    OutputFormatterStream(OutputFormatter formatter, Appendable out, Appendable plain, boolean decorated, boolean compact, ColorDepth colorDepth) {
+        this.formatter = formatter;
+        this.out = out;
+        this.plain = plain;
+        this.decorated = decorated;
+        this.compact = compact;
+        this.colorDepth = colorDepth;
+    }
+
+    /**
+     * Formats the next chunk of the message.
+     *
+     * @param chunk The chunk
+     *
+     * @return This stream
+     *
+     * @throws IOException When the appendable can not be written
+     * @throws IllegalArgumentException When style tags are incorrectly nested
+     * @throws IllegalStateException When the stream has ended
+     */
+    public OutputFormatterStream write(CharSequence chunk) throws IOException {
+        if (ended) {
+            throw new IllegalStateException("The stream has ended.");
+        }
+
+        int length = chunk.length();
+
+        if (0 == pending.length()) {
+            format(chunk, 0, length, true);
+
+            return this;
+        }
+
+        // Complete the tag read so far, with the text it may own
+        int i = 0;
+        while (i < length && '<' != chunk.charAt(i)) {
+            i++;
+        }
+
+        String head = pending.append(chunk, 0, i).toString();
+        pending.setLength(0);
+        format(head, 0, head.length(), i == length);
+        format(chunk, i, length, true);
+
+        return this;
+    }
+
+    /**
+     * Flushes the appendable, if it is flushable.
+     *
+     * A tag cut at the end of the last chunk is not written.
+     *
+     * @throws IOException When the appendable can not be flushed
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Ends the message.
+     *
+     * What was kept of an incomplete tag is written as it is, and in compact
+     * mode the style is reset. Ending a stream twice has no effect.
+     *
+     * @throws IOException When the appendable can not be written
+     */
+    public void end() throws IOException {
+        if (ended) {
+            return;
+        }
+
+        ended = true;
+
+        if (pending.length() > 0) {
+            String tail = pending.toString();
+            pending.setLength(0);
+            format(tail, 0, tail.length(), false);
+        }
+
+        if (decorated && compact) {
+            out.append(ImmutableOutputFormatterStyle.EMPTY.getTransitionSequence(current));
+            current = ImmutableOutputFormatterStyle.EMPTY;
+        }
+    }
+
+    /**
+     * Formats a range of a chunk.
+     *
+     * @param text  The chunk
+     * @param start Offset of the range in the chunk
+     * @param end   Offset after the range in the chunk
+     * @param more  Whether another chunk may follow, in which case a tag cut
+     *              at the end of the range is kept for later
+     */
+    private void format(CharSequence text, int start, int end, boolean more) throws IOException {
+        int complete = more ? incompleteTagStart(text, start, end) : end;
+
+        // The text before the first tag continues the previous chunk
+        int i = start;
+        while (i < complete && '<' != text.charAt(i)) {
+            i++;
+        }
+
+        if (i > start) {
+            appendText(textStyle, text, start, i);
+
+            if (null != plain) {
+                plain.append(text, start, i);
+            }
+        }
+
+        if (i < complete) {
+            OutputFormatterTokenizer tokenizer = new OutputFormatterTokenizer(text, i, complete);
+
+            while (tokenizer.next()) {
+                appendToken(tokenizer, text);
+            }
+        }
+
+        if (complete < end) {
+            pending.append(text, complete, end);
+        }
+    }
+
+    private void appendToken(OutputFormatterTokenizer tokenizer, CharSequence text) throws IOException {
+        if (!decorated || null != plain) {
+            boolean styleTag = tokenizer.isTag() && formatter.isStyleTag(tokenizer);
+            int start = styleTag ? tokenizer.getTextStart() : tokenizer.getStart();
+
+            if (null != plain) {
+                plain.append(text, start, tokenizer.getEnd());
+            }
+
+            if (!decorated) {
+                textStyle = null;
+                out.append(text, start, tokenizer.getEnd());
+
+                return;
+            }
+        }
+
+        OutputFormatterStyleInterface style = tokenizer.isTag() ? formatter.replaceStyle(tokenizer, styleStack) : null;
+        if (null != style) {
+            style = OutputFormatter.reduce(style, colorDepth);
+        }
+        textStyle = style;
+
+        if (null == style) {
+            appendText(null, text, tokenizer.getStart(), tokenizer.getEnd());
+        } else {
+            appendText(style, text, tokenizer.getTextStart(), tokenizer.getEnd());
+        }
+    }
+
+    private void appendText(OutputFormatterStyleInterface style, CharSequence text, int start, int end) throws IOException {
+        if (start == end) {
+            return;
+        }
+
+        if (!decorated || (null == style && !compact)) {
+            out.append(text, start, end);
+        } else if (!compact) {
+            formatter.applyStyle(style, true, text, start, end, out);
+        } else {
+            ImmutableOutputFormatterStyle immutable = null == style ? ImmutableOutputFormatterStyle.EMPTY : ImmutableOutputFormatterStyle.of(style);
+
+            if (null == immutable) {
+                // Custom styles only know how to wrap a whole text
+                out.append(ImmutableOutputFormatterStyle.EMPTY.getTransitionSequence(current));
+                out.append(style.apply(text.subSequence(start, end).toString()));
+                current = ImmutableOutputFormatterStyle.EMPTY;
+            } else {
+                out.append(immutable.getTransitionSequence(current)).append(text, start, end);
+                current = immutable;
+            }
+        }
+    }
+
+    /**
+     * Finds a tag which may be cut at the end of a range.
+     *
+     * @return Offset of the "<" starting the incomplete tag, or the end of the
+     *         range if there is none
+     */
+    private static int incompleteTagStart(CharSequence text, int start, int end) {
+        int i = end - 1;
+        while (i >= start && '<' != text.charAt(i) && isTagPart(text.charAt(i))) {
+            i--;
+        }
+
+        if (i < start || '<' != text.charAt(i)) {
+            return end;
+        }
+
+        // "<", "</", or an opening of a tag name
+        int name = i + 1 < end && '/' == text.charAt(i + 1) ? i + 2 : i + 1;
+        if (name < end && !isNameStart(text.charAt(name))) {
+            return end;
+        }
+
+        for (int j = name; j < end; j++) {
+            if ('/' == text.charAt(j)) {
+                return end;
+            }
+        }
+
+        return i;
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isTagPart(char c) {
+        return isNameStart(c) || (c >= '0' && c <= '9') || '_' == c || '=' == c || ';' == c || '#' == c || '-' == c || '/' == c;
+    }
+}
@@ -7,74 +7,26 @@
 
 package org.nanocom.console.formatter;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import org.apache.commons.lang3.StringUtils;
 
 /**
  * Formatter style class for defining styles.
  *
+ * The style is backed by an ImmutableOutputFormatterStyle: setters replace it
+ * by an updated copy, so the escape sequences are only computed when the
+ * style changes, not each time it is applied.
+ *
  * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
  */
 public class OutputFormatterStyle implements OutputFormatterStyleInterface {
 
-    private static Map<String, Integer> availableForegroundColors = getAvailableForegroundColors();
-    private static Map<String, Integer> availableBackgroundColors = getAvailableBackgroundColors();
-    private static Map<String, Integer> availableOptions = getAvailableOptions();
-
-    private static Map<String, Integer> getAvailableForegroundColors() {
-        Map<String, Integer> foregrounds = new LinkedHashMap<String, Integer>();
-        foregrounds.put("black", 30);
-        foregrounds.put("red", 31);
-        foregrounds.put("green", 32);
-        foregrounds.put("yellow", 33);
-        foregrounds.put("blue", 34);
-        foregrounds.put("magenta", 35);
-        foregrounds.put("cyan", 36);
-        foregrounds.put("white", 37);
-
-        return foregrounds;
-    }
-
-    private static Map<String, Integer> getAvailableBackgroundColors() {
-        Map<String, Integer> backgrounds = new LinkedHashMap<String, Integer>();
-        backgrounds.put("black", 40);
-        backgrounds.put("red", 41);
-        backgrounds.put("green", 42);
-        backgrounds.put("yellow", 43);
-        backgrounds.put("blue", 44);
-        backgrounds.put("magenta", 45);
-        backgrounds.put("cyan", 46);
-        backgrounds.put("white", 47);
-
-        return backgrounds;
-    }
-
-    private static Map<String, Integer> getAvailableOptions() {
-        Map<String, Integer> options = new HashMap<String, Integer>();
-        options.put("bold", 1);
-        options.put("underscore", 4);
-        options.put("blink", 5);
-        options.put("reverse", 7);
-        options.put("conceal", 8);
-
-        return options;
-    }
-
-    private Integer foreground;
-    private Integer background;
-    private List<Integer> options = new ArrayList<Integer>();
+    private volatile ImmutableOutputFormatterStyle style = ImmutableOutputFormatterStyle.EMPTY;
 
     /**
      * Initializes output formatter style.
      *
-     * @param foreground The style foreground color name
-     * @param background The style background color name
+     * @param foreground The style foreground color
+     * @param background The style background color
      * @param options    The style options
      */
     public OutputFormatterStyle(String foreground, String background, String[] options) {
@@ -84,8 +36,8 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
     /**
      * Initializes output formatter style.
      *
-     * @param foreground The style foreground color name
-     * @param background The style background color name
+     * @param foreground The style foreground color
+     * @param background The style background color
      * @param options    The style options
      */
     public OutputFormatterStyle(String foreground, String background, Collection<String> options) {
@@ -95,8 +47,8 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
     /**
      * Initializes output formatter style.
      *
-     * @param foreground The style foreground color name
-     * @param background The style background color name
+     * @param foreground The style foreground color
+     * @param background The style background color
      */
     public OutputFormatterStyle(String foreground, String background) {
         this(foreground, background, new String[0]);
@@ -105,7 +57,7 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
     /**
      * Initializes output formatter style.
      *
-     * @param foreground The style foreground color name
+     * @param foreground The style foreground color
      */
     public OutputFormatterStyle(String foreground) {
         this(foreground, null);
@@ -135,55 +87,25 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
     /**
      * Sets style foreground color.
      *
-     * @param color The color name
+     * @param color The color: a name, an index from 0 to 255 or #rrggbb
      *
      * @throws IllegalArgumentException When the color name isn't defined
      */
     @Override
     public void setForeground(String color) {
-        if (null == color) {
-            foreground = null;
-            return;
-        }
-
-        if (!availableForegroundColors.containsKey(color)) {
-            Set<String> foregroundNames = availableForegroundColors.keySet();
-            throw new IllegalArgumentException(String.format(
-                "Invalid foreground color specified: \"%s\". Expected one of (%s)",
-                color,
-                StringUtils.join((String[]) foregroundNames.toArray(new String[0]), ", ")
-            ));
-        }
-
-        foreground = availableForegroundColors.get(color);
+        style = style.withForeground(color);
     }
 
     /**
      * Sets style background color.
      *
-     * @param color The color name
+     * @param color The color: a name, an index from 0 to 255 or #rrggbb
      *
      * @throws IllegalArgumentException When the color name isn't defined
      */
     @Override
     public void setBackground(String color) {
-        if (null == color) {
-            background = null;
-            return;
-        }
-
-        if (!availableBackgroundColors.containsKey(color)) {
-            Set<String> backgroundNames = availableBackgroundColors.keySet();
-            List<String> backgroundNamesList = new ArrayList<String>();
-            backgroundNamesList.addAll(backgroundNames);
-            throw new IllegalArgumentException(String.format(
-                "Invalid background color specified: \"%s\". Expected one of (%s)",
-                color,
-                StringUtils.join((String[]) backgroundNamesList.toArray(new String[0]), ", ")
-            ));
-        }
-
-        background = availableBackgroundColors.get(color);
+        style = style.withBackground(color);
     }
 
     /**
@@ -195,19 +117,7 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
      */
     @Override
     public void setOption(String option) {
-        if (!availableOptions.containsKey(option)) {
-            Set<String> optionNames = availableOptions.keySet();
-            List<String> optionNamesList = new ArrayList<String>(optionNames);
-            throw new IllegalArgumentException(String.format(
-                "Invalid option specified: \"%s\". Expected one of (%s)",
-                option,
-                StringUtils.join(optionNamesList.toArray(), ", ")
-            ));
-        }
-
-        if (!options.contains(availableOptions.get(option))) {
-            options.add(availableOptions.get(option));
-        }
+        style = style.withOption(option);
     }
 
     /**
@@ -219,21 +129,7 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
      */
     @Override
     public void unsetOption(String option) {
-        if (!availableOptions.containsKey(option)) {
-            Set<String> optionNames = availableOptions.keySet();
-            List<String> optionNamesList = new ArrayList<String>();
-            optionNamesList.addAll(optionNames);
-            throw new IllegalArgumentException(String.format(
-                "Invalid option specified: \"%s\". Expected one of (%s)",
-                option,
-                StringUtils.join((String[]) optionNamesList.toArray(), ", ")
-            ));
-        }
-
-        int pos = options.indexOf(availableOptions.get(option));
-        if (pos > -1) {
-            options.remove(pos);
-        }
+        style = style.withoutOption(option);
     }
 
     /**
@@ -243,11 +139,7 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
      */
     @Override
     public void setOptions(String[] options) {
-        this.options = new ArrayList<Integer>();
-
-        for (String option : options) {
-            setOption(option);
-        }
+        style = style.withOptions(options);
     }
 
     /**
@@ -259,35 +151,21 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
      */
     @Override
     public String apply(String text) {
-        List<String> codes = new ArrayList<String>();
-
-        if (null != foreground) {
-            codes.add(foreground.toString());
-        }
-
-        if (null != background) {
-            codes.add(background.toString());
-        }
-
-        if (options.size() > 0) {
-            for (Integer option : options) {
-                codes.add(option.toString());
-            }
-        }
-
-        String flatCodes = StringUtils.join((String[]) codes.toArray(new String[0]), ";");
+        return style.apply(text);
+    }
 
-        return String.format("\033[%sm%s\033[0m", flatCodes, text);
+    /**
+     * Gets an immutable copy of the current state of the style.
+     *
+     * @return The immutable style
+     */
+    public ImmutableOutputFormatterStyle toImmutable() {
+        return style;
     }
 
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 71 * hash + (foreground != null ? foreground.hashCode() : 0);
-        hash = 71 * hash + (background != null ? background.hashCode() : 0);
-        hash = 71 * hash + (options != null ? options.hashCode() : 0);
-
-        return hash;
+        return style.hashCode();
     }
 
     @Override
@@ -300,19 +178,6 @@ public class OutputFormatterStyle implements OutputFormatterStyleInterface {
             return false;
         }
 
-        OutputFormatterStyle other = (OutputFormatterStyle) obj;
-        if (foreground != other.foreground && (foreground == null || !this.foreground.equals(other.foreground))) {
-            return false;
-        }
-
-        if (background != other.background && (background == null || !this.background.equals(other.background))) {
-            return false;
-        }
-
-        if (options != other.options && (options == null || !options.equals(other.options))) {
-            return false;
-        }
-
-        return true;
+        return style.equals(((OutputFormatterStyle) obj).style);
     }
 }
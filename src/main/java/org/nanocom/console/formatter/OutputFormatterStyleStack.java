@@ -7,19 +7,25 @@
 
 package org.nanocom.console.formatter;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 
 /**
+ * Stack of the styles opened while formatting a message.
+ *
+ * Styles are kept in an array which grows when needed. A closing tag is
+ * matched against the stacked styles by identity first, then by comparing
+ * their immutable forms, and only falls back to comparing the generated
+ * escape sequences for custom style implementations.
+ *
  * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
  */
 class OutputFormatterStyleStack {
 
-    private List<OutputFormatterStyle> styles;
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private OutputFormatterStyleInterface[] styles = new OutputFormatterStyleInterface[DEFAULT_CAPACITY];
+    private int size;
     private OutputFormatterStyleInterface emptyStyle;
 
     public OutputFormatterStyleStack() {
@@ -35,7 +41,8 @@ class OutputFormatterStyleStack {
      * Resets stack (ie. empty internal arrays).
      */
     public final void reset() {
-        styles = new ArrayList<OutputFormatterStyle>();
+        Arrays.fill(styles, 0, size, null);
+        size = 0;
     }
 
     /**
@@ -44,7 +51,11 @@ class OutputFormatterStyleStack {
      * @param style
      */
     public void push(OutputFormatterStyleInterface style) {
-        styles.add((OutputFormatterStyle) style);
+        if (size == styles.length) {
+            styles = Arrays.copyOf(styles, size << 1);
+        }
+
+        styles[size++] = style;
     }
 
     /**
@@ -57,24 +68,25 @@ class OutputFormatterStyleStack {
      * @throws IllegalArgumentException When style tags incorrectly nested
      */
     public OutputFormatterStyleInterface pop(OutputFormatterStyleInterface style) {
-        if (styles.isEmpty()) {
+        if (0 == size) {
             return emptyStyle;
         }
 
         if (null == style) {
-            return styles.remove(styles.size() - 1);
-        }
+            OutputFormatterStyleInterface popped = styles[--size];
+            styles[size] = null;
 
-        // Reverse the map
-        Map<Integer, OutputFormatterStyleInterface> reversedStyles = new LinkedHashMap<Integer, OutputFormatterStyleInterface>(styles.size());
-        for (int i = styles.size() - 1; i >= 0; --i) {
-            reversedStyles.put(i, styles.get(i));
+            return popped;
         }
 
-        for (Entry<Integer, OutputFormatterStyleInterface> stackedStyle : reversedStyles.entrySet()) {
-            if (style.apply(EMPTY).equals(stackedStyle.getValue().apply(EMPTY))) {
-                styles = styles.subList(0, stackedStyle.getKey());
-                return stackedStyle.getValue();
+        for (int i = size - 1; i >= 0; --i) {
+            OutputFormatterStyleInterface stackedStyle = styles[i];
+
+            if (matches(style, stackedStyle)) {
+                Arrays.fill(styles, i, size, null);
+                size = i;
+
+                return stackedStyle;
             }
         }
 
@@ -90,12 +102,19 @@ class OutputFormatterStyleStack {
      *
      * @return
      */
-    public OutputFormatterStyle getCurrent() {
-        if (styles.isEmpty()) {
-            return (OutputFormatterStyle) emptyStyle;
+    public OutputFormatterStyleInterface getCurrent() {
+        if (0 == size) {
+            return emptyStyle;
         }
 
-        return styles.get(styles.size() - 1);
+        return styles[size - 1];
+    }
+
+    /**
+     * @return True if no style is stacked
+     */
+    public boolean isEmpty() {
+        return 0 == size;
     }
 
     /**
@@ -114,4 +133,19 @@ class OutputFormatterStyleStack {
     public OutputFormatterStyleInterface getEmptyStyle() {
         return emptyStyle;
     }
+
+    private static boolean matches(OutputFormatterStyleInterface style, OutputFormatterStyleInterface stackedStyle) {
+        if (style == stackedStyle) {
+            return true;
+        }
+
+        ImmutableOutputFormatterStyle immutable = ImmutableOutputFormatterStyle.of(style);
+        ImmutableOutputFormatterStyle stackedImmutable = ImmutableOutputFormatterStyle.of(stackedStyle);
+
+        if (null != immutable && null != stackedImmutable) {
+            return immutable.equals(stackedImmutable);
+        }
+
+        return style.apply(EMPTY).equals(stackedStyle.apply(EMPTY));
+    }
 }
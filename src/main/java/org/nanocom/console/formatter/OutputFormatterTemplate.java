@@ -0,0 +1,301 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static org.apache.commons.lang3.SystemUtils.LINE_SEPARATOR;
+
+/**
+ * A message template compiled by OutputFormatterInterface#compile().
+ *
+ * The template is a String.format() format string containing style tags,
+ * like "<info>%s</info> processed in <comment>%d ms</comment>". Its tags are
+ * parsed and its styles resolved once, when it is compiled; whether the
+ * output is decorated is checked each time it is rendered.
+ *
+ * Arguments are written as they are: tags they may contain are not
+ * interpreted. As "<" starts a tag, the relative index flag ("%<s") is not
+ * supported; use an explicit index ("%1$s") instead.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class OutputFormatterTemplate {
+
+    /**
+     * The pattern of a format specifier, as understood by java.util.Formatter.
+     */
+    private static Pattern SPECIFIER_PATTERN = Pattern.compile("%(\\d+\\$)?([-#+ 0,(]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+
+    private final OutputFormatterInterface formatter;
+    private final List<Run> runs = new ArrayList<Run>();
+    private final boolean asciiDigits;
+    private int nextArgument = 0;
+    private boolean lineBreak = false;
+
+    OutputFormatterTemplate(OutputFormatterInterface formatter) {
+        this.formatter = formatter;
+        this.asciiDigits = '0' == DecimalFormatSymbols.getInstance(Locale.getDefault()).getZeroDigit();
+    }
+
+    /**
+     * Checks whether the template itself contains line breaks, either as
+     * text or as "%n": the arguments may contain others.
+     *
+     * @return True if rendering the template always writes a line break
+     */
+    public boolean hasLineBreak() {
+        return lineBreak;
+    }
+
+    /**
+     * Renders the template.
+     *
+     * @param args The format arguments
+     *
+     * @return The styled message
+     *
+     * @throws java.util.IllegalFormatException When an argument does not match its format specifier
+     */
+    public String render(Object... args) {
+        StringBuilder rendered = new StringBuilder();
+
+        try {
+            renderTo(rendered, args);
+        } catch (IOException e) {
+            // Never thrown by a StringBuilder
+            throw new IllegalStateException(e);
+        }
+
+        return rendered.toString();
+    }
+
+    /**
+     * Renders the template to the given appendable.
+     *
+     * @param out  Where to write the styled message
+     * @param args The format arguments
+     *
+     * @throws IOException When the appendable can not be written
+     * @throws java.util.IllegalFormatException When an argument does not match its format specifier
+     */
+    public void renderTo(Appendable out, Object... args) throws IOException {
+        boolean decorated = formatter.isDecorated();
+
+        for (Run run : runs) {
+            if (!decorated || null == run.style) {
+                for (Piece piece : run.pieces) {
+                    out.append(piece.render(args));
+                }
+            } else if (null != run.immutable && run.hasText) {
+                out.append(run.immutable.getStartSequence());
+                for (Piece piece : run.pieces) {
+                    out.append(piece.render(args));
+                }
+                out.append(run.immutable.getEndSequence());
+            } else {
+                // Like OutputFormatter#format(), an empty text must not be styled
+                String text = run.render(args);
+                if (text.length() > 0) {
+                    out.append(null == run.immutable ? run.style.apply(text) : run.immutable.getStartSequence() + text + run.immutable.getEndSequence());
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the template once, writing the styled message to an appendable
+     * and the message without styles to another.
+     *
+     * @param out   Where to write the styled message
+     * @param plain Where to write the message without styles
+     * @param args  The format arguments
+     *
+     * @throws IOException When an appendable can not be written
+     * @throws java.util.IllegalFormatException When an argument does not match its format specifier
+     */
+    public void renderTo(Appendable out, Appendable plain, Object... args) throws IOException {
+        boolean decorated = formatter.isDecorated();
+
+        for (Run run : runs) {
+            String text = run.render(args);
+            plain.append(text);
+
+            if (!decorated || null == run.style) {
+                out.append(text);
+            } else if (text.length() > 0) {
+                // Like OutputFormatter#format(), an empty text must not be styled
+                out.append(null == run.immutable ? run.style.apply(text) : run.immutable.getStartSequence() + text + run.immutable.getEndSequence());
+            }
+        }
+    }
+
+    /**
+     * Adds a chunk of the template.
+     *
+     * @param style The style of the chunk, null if it must not be styled
+     * @param text  The text of the chunk, possibly containing format specifiers
+     */
+    void addText(OutputFormatterStyleInterface style, String text) {
+        if (text.length() == 0) {
+            return;
+        }
+
+        if (text.indexOf('\n') >= 0) {
+            lineBreak = true;
+        }
+
+        Run run = new Run(style);
+        Matcher matcher = SPECIFIER_PATTERN.matcher(text);
+        int offset = 0;
+
+        while (matcher.find()) {
+            run.addLiteral(checkLiteral(text.substring(offset, matcher.start())));
+            offset = matcher.end();
+
+            char conversion = matcher.group(6).charAt(0);
+            if ('%' == conversion) {
+                run.addLiteral("%");
+                continue;
+            }
+
+            if ('n' == conversion) {
+                lineBreak = true;
+                run.addLiteral(LINE_SEPARATOR);
+                continue;
+            }
+
+            String flags = null == matcher.group(2) ? "" : matcher.group(2);
+            int argument;
+            if (null != matcher.group(1)) {
+                argument = Integer.parseInt(matcher.group(1).substring(0, matcher.group(1).length() - 1)) - 1;
+            } else {
+                argument = nextArgument++;
+            }
+
+            if (argument < 0) {
+                throw new MissingFormatArgumentException(matcher.group());
+            }
+
+            String specifier = "%" + flags
+                + (null == matcher.group(3) ? "" : matcher.group(3))
+                + (null == matcher.group(4) ? "" : matcher.group(4))
+                + (null == matcher.group(5) ? "" : matcher.group(5))
+                + conversion;
+
+            run.pieces.add(new Piece(specifier, argument, conversion, asciiDigits || 'd' != conversion));
+        }
+
+        run.addLiteral(checkLiteral(text.substring(offset)));
+        runs.add(run);
+    }
+
+    private static String checkLiteral(String literal) {
+        int i = literal.indexOf('%');
+        if (i >= 0) {
+            throw new UnknownFormatConversionException(i + 1 < literal.length() ? String.valueOf(literal.charAt(i + 1)) : "%");
+        }
+
+        return literal;
+    }
+
+    /**
+     * Text of the template sharing the same style.
+     */
+    private static class Run {
+
+        private final OutputFormatterStyleInterface style;
+        private final ImmutableOutputFormatterStyle immutable;
+        private final List<Piece> pieces = new ArrayList<Piece>();
+        private boolean hasText = false;
+
+        Run(OutputFormatterStyleInterface style) {
+            this.style = style;
+            this.immutable = ImmutableOutputFormatterStyle.of(style);
+        }
+
+        void addLiteral(String literal) {
+            if (literal.length() > 0) {
+                pieces.add(new Piece(literal));
+                hasText = true;
+            }
+        }
+
+        String render(Object[] args) {
+            if (1 == pieces.size()) {
+                return pieces.get(0).render(args);
+            }
+
+            StringBuilder text = new StringBuilder();
+            for (Piece piece : pieces) {
+                text.append(piece.render(args));
+            }
+
+            return text.toString();
+        }
+    }
+
+    /**
+     * Literal text or format specifier.
+     */
+    private static class Piece {
+
+        private final String text;
+        private final int argument;
+        private final char conversion;
+
+        /**
+         * Whether the specifier can be rendered without java.util.Formatter.
+         */
+        private final boolean simple;
+
+        Piece(String literal) {
+            this(literal, -1, '\0', false);
+        }
+
+        Piece(String specifier, int argument, char conversion, boolean simpleDigits) {
+            this.text = specifier;
+            this.argument = argument;
+            this.conversion = conversion;
+            this.simple = simpleDigits && 2 == specifier.length() && ('s' == conversion || 'd' == conversion);
+        }
+
+        String render(Object[] args) {
+            if (argument < 0) {
+                return text;
+            }
+
+            if (null == args || argument >= args.length) {
+                throw new MissingFormatArgumentException(text);
+            }
+
+            Object arg = args[argument];
+
+            if (simple) {
+                if ('s' == conversion && !(arg instanceof Formattable)) {
+                    return String.valueOf(arg);
+                }
+
+                if ('d' == conversion && (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte || arg instanceof BigInteger)) {
+                    return arg.toString();
+                }
+            }
+
+            return String.format(text, new Object[] {arg});
+        }
+    }
+}
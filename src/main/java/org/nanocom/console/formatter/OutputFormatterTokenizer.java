@@ -0,0 +1,181 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+/**
+ * Splits a message into raw text and style tags in a single pass.
+ *
+ * A tag is what "<(/?)([a-z][a-z0-9_=;#-]+)?>" matches (case insensitive), and
+ * it owns the text that follows it up to the next "<". Everything else is
+ * raw text.
+ *
+ * The tokenizer does not copy the message: tokens are exposed as offsets.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+final class OutputFormatterTokenizer {
+
+    private final CharSequence message;
+    private final int length;
+    private int position;
+
+    private boolean tag;
+    private boolean closing;
+    private int start;
+    private int end;
+    private int nameStart;
+    private int nameEnd;
+    private int textStart;
+
+    OutputFormatterTokenizer(CharSequence message) {
+        this(message, 0, message.length());
+    }
+
+    /**
+     * Splits a range of a message, as if the range was the whole message.
+     *
+     * @param message The message
+     * @param start   Offset of the range in the message
+     * @param end     Offset after the range in the message
+     */
+    OutputFormatterTokenizer(CharSequence message, int start, int end) {
+        this.message = message;
+        this.position = start;
+        this.length = end;
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return False when the whole message has been read
+     */
+    boolean next() {
+        if (position >= length) {
+            return false;
+        }
+
+        start = position;
+        int tagEnd = matchTag(position);
+
+        if (tagEnd < 0) {
+            // Raw text runs up to the next "<" that opens a valid tag
+            int i = position;
+            do {
+                i = indexOf('<', i + 1);
+            } while (i < length && matchTag(i) < 0);
+
+            tag = false;
+            position = end = i;
+
+            return true;
+        }
+
+        tag = true;
+        textStart = tagEnd;
+        position = end = indexOf('<', tagEnd);
+
+        return true;
+    }
+
+    /**
+     * @return True if the current token is a tag, false if it is raw text
+     */
+    boolean isTag() {
+        return tag;
+    }
+
+    /**
+     * @return True if the current tag is a closing one ("</...>")
+     */
+    boolean isClosing() {
+        return closing;
+    }
+
+    /**
+     * @return True if the current tag has no name ("<>" or "</>")
+     */
+    boolean isAnonymous() {
+        return nameStart == nameEnd;
+    }
+
+    /**
+     * @return The name of the current tag, as written in the message
+     */
+    String getName() {
+        return message.subSequence(nameStart, nameEnd).toString();
+    }
+
+    /**
+     * @return Offset of the first char of the token (the "<" for a tag)
+     */
+    int getStart() {
+        return start;
+    }
+
+    /**
+     * @return Offset after the last char of the token, text included
+     */
+    int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return Offset of the text following the current tag
+     */
+    int getTextStart() {
+        return textStart;
+    }
+
+    /**
+     * Tries to read a tag at the given offset.
+     *
+     * @param i Offset of the expected "<"
+     *
+     * @return The offset following the closing ">", -1 if there is no tag here
+     */
+    private int matchTag(int i) {
+        if ('<' != message.charAt(i)) {
+            return -1;
+        }
+
+        int j = i + 1;
+        closing = j < length && '/' == message.charAt(j);
+        if (closing) {
+            j++;
+        }
+
+        nameStart = j;
+        if (j + 1 < length && isNameStart(message.charAt(j)) && isNamePart(message.charAt(j + 1))) {
+            j += 2;
+            while (j < length && isNamePart(message.charAt(j))) {
+                j++;
+            }
+        }
+        nameEnd = j;
+
+        return j < length && '>' == message.charAt(j) ? j + 1 : -1;
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < length; i++) {
+            if (c == message.charAt(i)) {
+                return i;
+            }
+        }
+
+        return length;
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNamePart(char c) {
+        return isNameStart(c) || (c >= '0' && c <= '9') || '_' == c || '=' == c || ';' == c || '#' == c || '-' == c;
+    }
+}
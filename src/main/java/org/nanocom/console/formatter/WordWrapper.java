@@ -0,0 +1,302 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps messages to a number of columns as they are written.
+ *
+ * Messages are cut between words, and words longer than a line are cut
+ * where the line is full. Style tags take no column: as each line is
+ * written on its own, the styles opened when a line is cut are opened again
+ * at the beginning of the next one. Escape sequences take no column either.
+ *
+ * Only the word being read and the line being filled are kept: lines are
+ * passed to writeLine() as soon as they are complete, and the end of each
+ * message is passed as well so that it can be displayed.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public abstract class WordWrapper {
+
+    private final OutputFormatterInterface formatter;
+    private final int width;
+
+    private final StringBuilder line = new StringBuilder();
+    private int column = 0;
+    private boolean wrapped = false;
+    private int lineStart = 0;
+    private int spaces = 0;
+
+    private final StringBuilder word = new StringBuilder();
+    private int wordWidth = 0;
+    private List<String> wordTags = null;
+    private boolean longWord = false;
+
+    private final List<String> openTags = new ArrayList<String>();
+
+    /**
+     * Constructor.
+     *
+     * @param formatter The formatter which tells the style tags apart, null
+     *                  if getFormatter() is overridden
+     * @param width     The number of columns
+     */
+    public WordWrapper(OutputFormatterInterface formatter, int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("The width must be positive.");
+        }
+
+        this.formatter = formatter;
+        this.width = width;
+    }
+
+    /**
+     * Gets the number of columns.
+     *
+     * @return The number of columns
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the formatter which tells the style tags apart.
+     *
+     * @return The formatter
+     */
+    public OutputFormatterInterface getFormatter() {
+        return formatter;
+    }
+
+    /**
+     * Gets the column where the next message will be written.
+     *
+     * @return The number of columns already used on the current line
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Wraps a message containing style tags.
+     *
+     * @param message The message
+     * @param newline Whether to end the line after the message
+     */
+    public void write(CharSequence message, boolean newline) {
+        OutputFormatterTokenizer tokenizer = new OutputFormatterTokenizer(message);
+
+        while (tokenizer.next()) {
+            if (tokenizer.isTag() && isStyleTag(tokenizer)) {
+                appendTag(message.subSequence(tokenizer.getStart(), tokenizer.getTextStart()).toString(), tokenizer);
+                appendText(message, tokenizer.getTextStart(), tokenizer.getEnd());
+            } else {
+                appendText(message, tokenizer.getStart(), tokenizer.getEnd());
+            }
+        }
+
+        endMessage(newline);
+    }
+
+    /**
+     * Wraps a message whose tags must not be interpreted.
+     *
+     * @param message The message
+     * @param newline Whether to end the line after the message
+     */
+    public void writeRaw(CharSequence message, boolean newline) {
+        appendText(message, 0, message.length());
+        endMessage(newline);
+    }
+
+    /**
+     * Writes a line.
+     *
+     * @param line    The line, possibly containing style tags
+     * @param newline Whether the line is complete, or is the end of a
+     *                message to be continued by the next one
+     */
+    protected abstract void writeLine(String line, boolean newline);
+
+    private boolean isStyleTag(OutputFormatterTokenizer tag) {
+        if (tag.isAnonymous()) {
+            return tag.isClosing();
+        }
+
+        String name = tag.getName();
+
+        return OutputFormatter.isInlineStyle(name) || getFormatter().hasStyle(name.toLowerCase());
+    }
+
+    private void appendTag(String tag, OutputFormatterTokenizer tokenizer) {
+        if (longWord) {
+            line.append(tag);
+        } else {
+            if (null == wordTags) {
+                // The styles to open again if the line is cut before the word
+                wordTags = new ArrayList<String>(openTags);
+            }
+
+            word.append(tag);
+        }
+
+        if (!tokenizer.isClosing()) {
+            openTags.add(tag);
+        } else if (tokenizer.isAnonymous()) {
+            if (!openTags.isEmpty()) {
+                openTags.remove(openTags.size() - 1);
+            }
+        } else {
+            String opening = "<" + tokenizer.getName().toLowerCase() + ">";
+
+            for (int i = openTags.size() - 1; i >= 0; i--) {
+                if (opening.equals(openTags.get(i).toLowerCase())) {
+                    openTags.subList(i, openTags.size()).clear();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void appendText(CharSequence text, int start, int end) {
+        for (int i = start; i < end;) {
+            char c = text.charAt(i);
+
+            if ('\n' == c) {
+                endWord();
+                spaces = 0;
+                endLine(false, openTags);
+                i++;
+            } else if (' ' == c) {
+                endWord();
+                if (0 == column && !wrapped) {
+                    // Indentation
+                    appendToLine(text, i, i + 1, 1);
+                } else {
+                    spaces++;
+                }
+                i++;
+            } else if ('\033' == c) {
+                int next = DisplayWidth.skipEscapeSequence(text, i, end);
+                appendToWord(text, i, next, 0);
+                i = next;
+            } else {
+                int codePoint = Character.codePointAt(text, i);
+                int next = i + Character.charCount(codePoint);
+                appendToWord(text, i, next, DisplayWidth.of(codePoint));
+                i = next;
+            }
+        }
+    }
+
+    private void appendToWord(CharSequence text, int start, int end, int columns) {
+        if (longWord) {
+            appendToLine(text, start, end, columns);
+
+            return;
+        }
+
+        if (wordWidth + columns > width) {
+            // The word does not fit on a line: what was read of it goes on
+            // the current line if possible, and the rest fills the lines
+            placeWord();
+            longWord = true;
+            appendToLine(text, start, end, columns);
+
+            return;
+        }
+
+        word.append(text, start, end);
+        wordWidth += columns;
+    }
+
+    private void appendToLine(CharSequence text, int start, int end, int columns) {
+        if (column + columns > width && column > 0) {
+            endLine(true, openTags);
+        }
+
+        line.append(text, start, end);
+        column += columns;
+    }
+
+    private void endWord() {
+        if (longWord) {
+            longWord = false;
+        } else {
+            placeWord();
+        }
+    }
+
+    private void placeWord() {
+        if (0 == word.length()) {
+            return;
+        }
+
+        if (column > 0 && column + spaces + wordWidth > width) {
+            endLine(true, null == wordTags ? openTags : wordTags);
+        }
+
+        if (column > 0) {
+            column += spaces;
+            for (; spaces > 0; spaces--) {
+                line.append(' ');
+            }
+        }
+
+        spaces = 0;
+        line.append(word);
+        column += wordWidth;
+
+        word.setLength(0);
+        wordWidth = 0;
+        wordTags = null;
+    }
+
+    private void endLine(boolean wrap, List<String> tags) {
+        writeLine(line.toString(), true);
+
+        line.setLength(0);
+        column = 0;
+        spaces = 0;
+        wrapped = wrap;
+
+        for (String tag : tags) {
+            line.append(tag);
+        }
+        lineStart = line.length();
+    }
+
+    private void endMessage(boolean newline) {
+        endWord();
+
+        if (newline) {
+            writeLine(line.toString(), true);
+            column = 0;
+            wrapped = false;
+        } else {
+            // Spaces written at the end of a message separate it from the next one
+            for (; spaces > 0 && column < width; spaces--) {
+                line.append(' ');
+                column++;
+            }
+
+            if (line.length() > lineStart) {
+                writeLine(line.toString(), false);
+            }
+        }
+
+        // Like the formatter, the styles opened by a message end with it
+        line.setLength(0);
+        lineStart = 0;
+        spaces = 0;
+        openTags.clear();
+    }
+}
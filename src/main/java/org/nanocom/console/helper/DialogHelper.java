@@ -107,6 +107,7 @@ public class DialogHelper extends Helper {
      */
     public String ask(OutputInterface output, String question, String defaultAnswer, List<String> autocomplete) throws IOException {
         output.write(question);
+        output.flush();
 
         if (null == reader) {
             reader = new BufferedReader(new InputStreamReader(System.in));
@@ -305,6 +306,7 @@ public class DialogHelper extends Helper {
 
         if (hasSttyAvailable()) {
             output.write(question);
+            output.flush();
 
             String sttyMode = shellExec("stty -g");
 
@@ -324,6 +326,7 @@ public class DialogHelper extends Helper {
 
         if (null != (shell = getShell())) {
             output.write(question);
+            output.flush();
             String readCmd = "csh".equals(shell) ? "set mypassword = <" : "read -r mypassword";
             String command = String.format("/usr/bin/env %s -c 'stty -echo; %s; stty echo; echo \\mypassword'", shell, readCmd);
             String value = shellExec(command);
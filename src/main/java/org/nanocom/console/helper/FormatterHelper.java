@@ -10,6 +10,7 @@ package org.nanocom.console.helper;
 import java.util.ArrayList;
 import java.util.List;
 import static org.apache.commons.lang3.StringUtils.*;
+import org.nanocom.console.formatter.DisplayWidth;
 import org.nanocom.console.formatter.OutputFormatter;
 
 /**
@@ -59,7 +60,8 @@ public class FormatterHelper extends Helper {
         for (String message : messages) {
             message = OutputFormatter.escape(message);
             lines.add(String.format(large ? "  %s  " : " %s ", message));
-            len = Math.max(length(message) + (large ? 4 : 2), len);
+            // Escaped, the message is displayed as it is
+            len = Math.max(DisplayWidth.of(message) + (large ? 4 : 2), len);
         }
 
         messages = new ArrayList<String>();
@@ -68,7 +70,7 @@ public class FormatterHelper extends Helper {
         }
 
         for (String line : lines) {
-            messages.add(line + repeat(' ', len - length(line)));
+            messages.add(DisplayWidth.pad(line, len));
         }
 
         if (large) {
@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import static org.apache.commons.lang3.StringUtils.*;
 import org.nanocom.console.exception.LogicException;
+import org.nanocom.console.formatter.DisplayWidth;
 import org.nanocom.console.output.OutputInterface;
 
 /**
@@ -178,6 +179,8 @@ public class ProgressHelper extends Helper {
                     break;
 
                 case VERBOSE:
+                case VERY_VERBOSE:
+                case DEBUG:
                     format = FORMAT_VERBOSE_NOMAX;
                     if (this.max > 0) {
                         this.format = FORMAT_VERBOSE;
@@ -403,16 +406,21 @@ public class ProgressHelper extends Helper {
      * @param size    The size of line
      */
     private void overwrite(OutputInterface output, String message, boolean newline, int size) {
+        int width = DisplayWidth.ofMessage(message);
+
         output.write(repeat(BACKSPACE, size));
         output.write(message, false);
-        output.write(repeat(" ", size - message.length()));
+        output.write(repeat(" ", size - width));
 
         // Clean up the end line
-        output.write(repeat(BACKSPACE, size - message.length()));
+        output.write(repeat(BACKSPACE, size - width));
 
         if (newline) {
             output.writeln("");
         }
+
+        // The bar is displayed even when the output waits for line breaks
+        output.flush();
     }
 
     /**
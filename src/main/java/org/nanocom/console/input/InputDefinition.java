@@ -11,6 +11,7 @@ import java.util.*;
 import java.util.Map.Entry;
 import static org.apache.commons.lang3.StringUtils.*;
 import org.nanocom.console.exception.LogicException;
+import org.nanocom.console.formatter.DisplayWidth;
 
 /**
  * An InputDefinition represents a set of valid command line arguments and options.
@@ -431,16 +432,16 @@ public class InputDefinition {
         // Find the largest option or argument name
         int max = 0;
         for (InputOption option : options.values()) {
-            int nameLength = option.getName().length() + 2;
+            int nameLength = DisplayWidth.of(option.getName()) + 2;
             if (null != option.getShortcut()) {
-                nameLength += option.getShortcut().length() + 3;
+                nameLength += DisplayWidth.of(option.getShortcut()) + 3;
             }
 
             max = Math.max(max, nameLength);
         }
 
         for (InputArgument argument : arguments.values()) {
-            max = Math.max(max, argument.getName().length());
+            max = Math.max(max, DisplayWidth.of(argument.getName()));
         }
         ++max;
 
@@ -468,7 +469,7 @@ public class InputDefinition {
 
                 String description = argument.getDescription().replaceAll("\n", "\n" + repeat(' ', max + 2));
 
-                text.add(String.format(" <info>%-" + max + "s</info> %s%s", argument.getName(), description, defaultValue));
+                text.add(String.format(" <info>%s</info> %s%s", DisplayWidth.pad(argument.getName(), max), description, defaultValue));
             }
 
             text.add(EMPTY);
@@ -500,10 +501,10 @@ public class InputDefinition {
                 String multiple = option.isArray() ? "<comment> (multiple values allowed)</comment>" : EMPTY;
                 String description = option.getDescription().replace("\n", "\n" + repeat(' ', max + 2));
 
-                int optionMax = max - option.getName().length() - 2;
-                text.add(String.format(" <info>%s</info> %-" + optionMax + "s%s%s%s",
+                int optionMax = max - DisplayWidth.of(option.getName()) - 2;
+                text.add(String.format(" <info>%s</info> %s%s%s%s",
                     "--" + option.getName(),
-                    null != option.getShortcut() ? String.format("(-%s) ", option.getShortcut()) : EMPTY,
+                    DisplayWidth.pad(null != option.getShortcut() ? String.format("(-%s) ", option.getShortcut()) : EMPTY, optionMax),
                     description,
                     defaultValue,
                     multiple
@@ -0,0 +1,473 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * AsyncOutput writes the messages to another output from a dedicated thread.
+ *
+ *     AsyncOutput output = new AsyncOutput(new ConsoleOutput());
+ *
+ * Messages are formatted by the thread writing them, then queued in a bounded
+ * ring buffer which the writer thread empties, so that a slow terminal or a
+ * blocked pipe does not stall the commands. When the buffer is full, the
+ * wait strategy decides what happens to the message.
+ *
+ * flush() waits for the queued messages to be written. Application.run()
+ * flushes its output before rendering an exception and before exiting, and
+ * the messages still queued when the JVM exits normally, as on
+ * System.exit(), are written by a shutdown hook.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class AsyncOutput extends ForwardingOutput implements Closeable {
+
+    /**
+     * What a thread writing a message does when the buffer is full.
+     */
+    public static enum WaitStrategy {
+
+        /**
+         * Sleep until the writer thread makes room.
+         */
+        BLOCKING,
+
+        /**
+         * Drop the message.
+         */
+        DROPPING,
+
+        /**
+         * Spin, yielding to other threads, until the writer thread makes room.
+         */
+        YIELD
+    }
+
+    /**
+     * The default number of messages the buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    // Fills a cell claimed once the output was closed, which is skipped
+    private static final String CANCELLED = new String();
+
+    // Outputs which may hold queued messages when the JVM exits
+    private static Set<AsyncOutput> openOutputs;
+
+    private final OutputInterface output;
+    private final WaitStrategy waitStrategy;
+
+    // Bounded multiple producers, single consumer queue: each cell holds the
+    // position it may be written at, or the position after it once written
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final String[] messages;
+    private final boolean[] newlines;
+    private final VerbosityLevel[] levels;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean sleeping = false;
+    private volatile boolean closed = false;
+    private volatile RuntimeException failure;
+
+    /**
+     * Constructor.
+     *
+     * @param output       The output to write the messages to
+     * @param capacity     The number of messages the buffer holds, rounded up
+     *                     to a power of two, 2 at least
+     * @param waitStrategy What to do when the buffer is full
+     */
+    public AsyncOutput(OutputInterface output, int capacity, WaitStrategy waitStrategy) {
+        if (null == output) {
+            throw new IllegalArgumentException("The output cannot be null.");
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+
+        // A single cell could not tell a written message from a free cell
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.output = output;
+        this.waitStrategy = waitStrategy;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.messages = new String[size];
+        this.newlines = new boolean[size];
+        this.levels = new VerbosityLevel[size];
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "AsyncOutput writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        registerOpenOutput(this);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param output       The output to write the messages to
+     * @param waitStrategy What to do when the buffer is full
+     */
+    public AsyncOutput(OutputInterface output, WaitStrategy waitStrategy) {
+        this(output, DEFAULT_CAPACITY, waitStrategy);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param output The output to write the messages to
+     */
+    public AsyncOutput(OutputInterface output) {
+        this(output, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * Gets the output the messages are written to.
+     *
+     * @return The wrapped output
+     */
+    public OutputInterface getOutput() {
+        return output;
+    }
+
+    /**
+     * Gets what a thread writing a message does when the buffer is full.
+     *
+     * @return The wait strategy
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Gets the number of messages dropped because the buffer was full.
+     *
+     * @return The number of messages
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages, boolean newline, OutputType type, VerbosityLevel level) {
+        if (!getVerbosity().includes(level)) {
+            return;
+        }
+
+        OutputFormatterInterface formatter = getFormatter();
+
+        for (String message : messages) {
+            switch (type) {
+                case NORMAL:
+                    message = formatter.format(message);
+                    break;
+                case RAW:
+                    break;
+                case PLAIN:
+                    message = formatter.strip(message);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown output type given (%s)", type));
+            }
+
+            offer(message, newline, level, waitStrategy);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args, VerbosityLevel level) {
+        offer(template.render(args), false, level, waitStrategy);
+    }
+
+    /**
+     * Waits for the queued messages to be written, then flushes the wrapped
+     * output.
+     *
+     * @throws OutputException When a message could not be written
+     */
+    @Override
+    public void flush() {
+        if (!closed) {
+            // A null message asks the writer thread to flush
+            long position = offer(null, false, VerbosityLevel.NORMAL, WaitStrategy.BLOCKING);
+            awaitWritten(position);
+        }
+
+        throwFailure();
+    }
+
+    /**
+     * Writes the queued messages and stops the writer thread, then closes
+     * the wrapped output if it can be closed, or flushes it.
+     *
+     * Messages can not be written anymore once the output is closed.
+     *
+     * @throws OutputException When a message could not be written
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            unregisterOpenOutput(this);
+            LockSupport.unpark(writer);
+
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (output instanceof Closeable) {
+                try {
+                    ((Closeable) output).close();
+                } catch (IOException e) {
+                    throw new OutputException("Unable to close the output.", e);
+                }
+            } else {
+                output.flush();
+            }
+        }
+
+        throwFailure();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerbosity(VerbosityLevel level) {
+        output.setVerbosity(level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VerbosityLevel getVerbosity() {
+        return output.getVerbosity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDecorated(boolean decorated) {
+        output.setDecorated(decorated);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDecorated() {
+        return output.isDecorated();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFormatter(OutputFormatterInterface formatter) {
+        output.setFormatter(formatter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputFormatterInterface getFormatter() {
+        return output.getFormatter();
+    }
+
+    /**
+     * Queues a message.
+     *
+     * @return The position of the message, -1 if it was dropped
+     */
+    private long offer(String message, boolean newline, VerbosityLevel level, WaitStrategy strategy) {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("The output is closed.");
+            }
+
+            long position = tail.get();
+            int cell = (int) position & mask;
+            long available = sequences.get(cell) - position;
+
+            if (0 == available) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    // The writer thread only stops once it has reached the
+                    // cells claimed before the output was closed
+                    boolean cancelled = closed;
+
+                    messages[cell] = cancelled ? CANCELLED : message;
+                    newlines[cell] = newline;
+                    levels[cell] = level;
+                    sequences.set(cell, position + 1);
+
+                    if (sleeping) {
+                        LockSupport.unpark(writer);
+                    }
+
+                    if (cancelled) {
+                        throw new IllegalStateException("The output is closed.");
+                    }
+
+                    return position;
+                }
+            } else if (available < 0) {
+                // The buffer is full
+                switch (strategy) {
+                    case DROPPING:
+                        dropped.incrementAndGet();
+                        return -1;
+                    case YIELD:
+                        Thread.yield();
+                        break;
+                    default:
+                        LockSupport.parkNanos(PARK_NANOS);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the queued messages until the output is closed, on the writer
+     * thread.
+     */
+    private void drain() {
+        long position = 0;
+
+        while (true) {
+            int cell = (int) position & mask;
+
+            if (sequences.get(cell) == position + 1) {
+                String message = messages[cell];
+                boolean newline = newlines[cell];
+                VerbosityLevel level = levels[cell];
+                messages[cell] = null;
+                sequences.set(cell, position + mask + 1);
+                position++;
+
+                try {
+                    if (null == message) {
+                        output.flush();
+                    } else if (CANCELLED != message) {
+                        output.write(message, newline, OutputType.RAW, level);
+                    }
+                } catch (RuntimeException e) {
+                    if (null == failure) {
+                        failure = e;
+                    }
+                }
+
+                written.set(position);
+                continue;
+            }
+
+            if (closed && tail.get() == position) {
+                return;
+            }
+
+            sleeping = true;
+            if (sequences.get(cell) != position + 1 && !closed) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void awaitWritten(long position) {
+        while (written.get() <= position && writer.isAlive()) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private void throwFailure() {
+        RuntimeException e = failure;
+
+        if (null != e) {
+            failure = null;
+            throw e instanceof OutputException ? (OutputException) e : new OutputException("Unable to write to the output.", e);
+        }
+    }
+
+    private static synchronized void registerOpenOutput(AsyncOutput output) {
+        if (null == openOutputs) {
+            openOutputs = Collections.newSetFromMap(new WeakHashMap<AsyncOutput, Boolean>());
+
+            Runtime.getRuntime().addShutdownHook(new Thread("AsyncOutput flush") {
+                @Override
+                public void run() {
+                    List<AsyncOutput> outputs;
+                    synchronized (AsyncOutput.class) {
+                        outputs = new ArrayList<AsyncOutput>(openOutputs);
+                    }
+
+                    // The writer threads are still running
+                    for (AsyncOutput output : outputs) {
+                        try {
+                            output.flush();
+                        } catch (RuntimeException e) {
+                            // Nowhere to report it
+                        }
+                    }
+                }
+            });
+        }
+
+        openOutputs.add(output);
+    }
+
+    private static synchronized void unregisterOpenOutput(AsyncOutput output) {
+        if (null != openOutputs) {
+            openOutputs.remove(output);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.formatter.ChannelSink;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * ChannelOutput writes the output to a channel.
+ *
+ *     FileChannel channel = new FileOutputStream("report.txt").getChannel();
+ *     ChannelOutput output = new ChannelOutput(channel);
+ *
+ * Messages are encoded with a single encoder into a direct buffer, without
+ * the locking and copies of a PrintStream, which makes it the output of
+ * choice for large reports. The buffer is written to the channel when it is
+ * full and on flush(), large messages going through it in several writes.
+ *
+ * The channel is assumed to use the platform charset unless setCharset()
+ * tells otherwise.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class ChannelOutput extends Output implements Closeable {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final Object lock = new Object();
+    private final WritableByteChannel channel;
+    private ChannelSink sink;
+
+    /**
+     * Constructor.
+     *
+     * @param channel   The channel to write the output to
+     * @param verbosity The verbosity level
+     * @param decorated Whether to decorate messages or not
+     * @param formatter Output formatter instance
+     */
+    public ChannelOutput(WritableByteChannel channel, VerbosityLevel verbosity, boolean decorated, OutputFormatterInterface formatter) {
+        if (null == channel) {
+            throw new IllegalArgumentException("The channel cannot be null.");
+        }
+
+        this.channel = channel;
+        this.sink = new ChannelSink(channel, Charset.defaultCharset());
+        init(verbosity, decorated, formatter);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel   The channel to write the output to
+     * @param verbosity The verbosity level
+     * @param decorated Whether to decorate messages or not
+     */
+    public ChannelOutput(WritableByteChannel channel, VerbosityLevel verbosity, boolean decorated) {
+        this(channel, verbosity, decorated, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel   The channel to write the output to
+     * @param verbosity The verbosity level
+     */
+    public ChannelOutput(WritableByteChannel channel, VerbosityLevel verbosity) {
+        this(channel, verbosity, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel to write the output to
+     */
+    public ChannelOutput(WritableByteChannel channel) {
+        this(channel, VerbosityLevel.NORMAL);
+    }
+
+    /**
+     * Gets the channel the output is written to.
+     *
+     * @return The channel
+     */
+    public WritableByteChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Sets the charset the messages are encoded with.
+     *
+     * @param charset The charset of the channel
+     */
+    public void setCharset(Charset charset) {
+        synchronized (lock) {
+            flush();
+            sink = new ChannelSink(channel, charset);
+        }
+    }
+
+    /**
+     * Gets the charset the messages are encoded with.
+     *
+     * @return The charset of the channel
+     */
+    public Charset getCharset() {
+        return sink.getCharset();
+    }
+
+    /**
+     * Writes the buffered messages to the channel.
+     */
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            try {
+                sink.flush();
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the channel.", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered messages and closes the channel.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            try {
+                sink.flush();
+                channel.close();
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the channel.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWrite(String message, boolean newline) {
+        synchronized (lock) {
+            try {
+                sink.append(message);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the channel.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteFormatted(String message, boolean newline) {
+        synchronized (lock) {
+            try {
+                getFormatter().formatTo(message, sink);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the channel.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args) {
+        synchronized (lock) {
+            try {
+                template.renderTo(sink, args);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the channel.", e);
+            }
+        }
+    }
+}
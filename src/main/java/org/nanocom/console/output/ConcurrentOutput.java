@@ -0,0 +1,205 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * ConcurrentOutput lets several threads write to another output without
+ * mixing their lines.
+ *
+ *     OutputInterface output = new ConcurrentOutput(new ConsoleOutput());
+ *
+ * Each thread formats its messages into a line buffer of its own, and only
+ * publishes whole lines. Published lines are queued without locking, and
+ * written by whichever thread finds no other thread writing them: the lines
+ * of all the threads are then written to the wrapped output at once, which
+ * no other thread waits for.
+ *
+ * The end of a line which is not complete is kept by the thread writing it
+ * until the line ends, or until the thread calls flush().
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class ConcurrentOutput extends ForwardingOutput {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final OutputInterface output;
+    private final Queue<String> lines = new ConcurrentLinkedQueue<String>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    // Only used by the thread writing the lines
+    private final StringBuilder batch = new StringBuilder();
+
+    private final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param output The output to write the lines to
+     */
+    public ConcurrentOutput(OutputInterface output) {
+        if (null == output) {
+            throw new IllegalArgumentException("The output cannot be null.");
+        }
+
+        this.output = output;
+    }
+
+    /**
+     * Gets the output the lines are written to.
+     *
+     * @return The wrapped output
+     */
+    public OutputInterface getOutput() {
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages, boolean newline, OutputType type, VerbosityLevel level) {
+        if (!getVerbosity().includes(level)) {
+            return;
+        }
+
+        OutputFormatterInterface formatter = getFormatter();
+        StringBuilder buffer = buffers.get();
+
+        for (String message : messages) {
+            switch (type) {
+                case NORMAL:
+                    buffer.append(formatter.format(message));
+                    break;
+                case RAW:
+                    buffer.append(message);
+                    break;
+                case PLAIN:
+                    buffer.append(formatter.strip(message));
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown output type given (%s)", type));
+            }
+
+            if (newline) {
+                buffer.append(LINE_SEPARATOR);
+            }
+        }
+
+        publish(buffer, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args, VerbosityLevel level) {
+        StringBuilder buffer = buffers.get();
+        buffer.append(template.render(args));
+        publish(buffer, false);
+    }
+
+    /**
+     * Publishes the end of the line written by the current thread, writes
+     * the published lines, then flushes the wrapped output.
+     */
+    @Override
+    public void flush() {
+        publish(buffers.get(), true);
+        output.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerbosity(VerbosityLevel level) {
+        output.setVerbosity(level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VerbosityLevel getVerbosity() {
+        return output.getVerbosity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDecorated(boolean decorated) {
+        output.setDecorated(decorated);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDecorated() {
+        return output.isDecorated();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFormatter(OutputFormatterInterface formatter) {
+        output.setFormatter(formatter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputFormatterInterface getFormatter() {
+        return output.getFormatter();
+    }
+
+    /**
+     * Queues the whole lines of a thread buffer, or all of it, then writes
+     * the queued lines unless another thread is doing so.
+     */
+    private void publish(StringBuilder buffer, boolean all) {
+        int end = all ? buffer.length() : buffer.lastIndexOf("\n") + 1;
+
+        if (end > 0) {
+            lines.offer(buffer.substring(0, end));
+            buffer.delete(0, end);
+        }
+
+        // A thread giving up finds the lines queued before it released the flag
+        while (!lines.isEmpty() && writing.compareAndSet(false, true)) {
+            try {
+                String line;
+                while (null != (line = lines.poll())) {
+                    batch.append(line);
+                }
+
+                // The lines were filtered by level as they were written
+                output.write(batch.toString(), false, OutputType.RAW, VerbosityLevel.QUIET);
+            } finally {
+                batch.setLength(0);
+                writing.set(false);
+            }
+        }
+    }
+}
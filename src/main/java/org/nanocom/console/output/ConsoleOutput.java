@@ -7,6 +7,8 @@
 
 package org.nanocom.console.output;
 
+import java.io.PrintStream;
+import java.nio.charset.Charset;
 import org.nanocom.console.formatter.OutputFormatterInterface;
 
 /**
@@ -20,6 +22,9 @@ import org.nanocom.console.formatter.OutputFormatterInterface;
  *
  *     OutputInterface output = new StreamOutput(System.out);
  *
+ * except that the messages are encoded by the output, with the charset the
+ * standard streams use, rather than printed to them as text.
+ *
  * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
  */
 public class ConsoleOutput extends StreamOutput implements ConsoleOutputInterface {
@@ -35,7 +40,11 @@ public class ConsoleOutput extends StreamOutput implements ConsoleOutputInterfac
      */
     public ConsoleOutput(VerbosityLevel verbosity, Boolean decorated, OutputFormatterInterface formatter) {
         super(System.out, verbosity, decorated, formatter);
-        stderr = new StreamOutput(System.err, verbosity, decorated, formatter);
+        setCharset(charsetOf(System.out, "stdout"));
+
+        StreamOutput error = new StreamOutput(System.err, verbosity, decorated, formatter);
+        error.setCharset(charsetOf(System.err, "stderr"));
+        stderr = error;
     }
 
     /**
@@ -91,6 +100,15 @@ public class ConsoleOutput extends StreamOutput implements ConsoleOutputInterfac
         stderr.setVerbosity(level);
     }
 
+    /**
+     * Writes the buffered messages of both the standard and error outputs.
+     */
+    @Override
+    public void flush() {
+        super.flush();
+        stderr.flush();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -106,4 +124,34 @@ public class ConsoleOutput extends StreamOutput implements ConsoleOutputInterfac
     public void setErrorOutput(OutputInterface error) {
         stderr = error;
     }
+
+    /**
+     * Gets the charset a standard stream encodes text with.
+     *
+     * @param stream The stream
+     * @param name   The name of the stream, "stdout" or "stderr"
+     *
+     * @return The charset
+     */
+    private static Charset charsetOf(PrintStream stream, String name) {
+        try {
+            // Since Java 18
+            return (Charset) PrintStream.class.getMethod("charset").invoke(stream);
+        } catch (Exception e) {
+            // Created with the charset below
+        }
+
+        for (String property : new String[] {name + ".encoding", "sun." + name + ".encoding"}) {
+            String encoding = System.getProperty(property);
+            if (null != encoding) {
+                try {
+                    return Charset.forName(encoding);
+                } catch (IllegalArgumentException e) {
+                    // Not supported
+                }
+            }
+        }
+
+        return Charset.defaultCharset();
+    }
 }
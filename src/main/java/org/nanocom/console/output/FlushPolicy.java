@@ -0,0 +1,45 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+/**
+ * When a StreamOutput flushes its stream.
+ *
+ * Whatever the policy, the output is flushed by flush(), and the buffer is
+ * written to the stream when it is full.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public enum FlushPolicy {
+
+    /**
+     * After each message.
+     */
+    ALWAYS,
+
+    /**
+     * After each message ending a line or containing a line break.
+     */
+    NEWLINE,
+
+    /**
+     * When the buffered messages reach the flush size.
+     */
+    SIZE,
+
+    /**
+     * After a message, when the flush interval has elapsed since the last
+     * flush.
+     */
+    INTERVAL,
+
+    /**
+     * Only on flush().
+     */
+    EXPLICIT
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.util.Arrays;
+import java.util.List;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * Base class for the outputs forwarding the messages to other outputs.
+ *
+ * All the writing methods end up in write() with a list of messages, and
+ * printf() in doWriteTemplate() with a template compiled by the formatter
+ * of the output, kept for the next calls with the same format until the
+ * styles of the formatter change. Messages are neither built nor formatted
+ * when the verbosity does not include their level.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public abstract class ForwardingOutput implements OutputInterface {
+
+    private final TemplateCache templates = new TemplateCache();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(String message, boolean newline, OutputType type, VerbosityLevel level) {
+        write(Arrays.asList(message), newline, type, level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(MessageSupplier supplier, boolean newline, OutputType type, VerbosityLevel level) {
+        if (getVerbosity().includes(level)) {
+            write(supplier.get(), newline, type, level);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages, boolean newline, OutputType type) {
+        write(messages, newline, type, VerbosityLevel.NORMAL);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(String message, boolean newline, OutputType type) {
+        write(Arrays.asList(message), newline, type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages, boolean newline) {
+        write(messages, newline, OutputType.NORMAL);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(String message, boolean newline) {
+        write(Arrays.asList(message), newline);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages) {
+        write(messages, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(String message) {
+        write(Arrays.asList(message));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(String message, VerbosityLevel level) {
+        write(message, true, OutputType.NORMAL, level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(MessageSupplier supplier, VerbosityLevel level) {
+        write(supplier, true, OutputType.NORMAL, level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(List<String> messages, OutputType type) {
+        write(messages, true, type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(String message, OutputType type) {
+        write(Arrays.asList(message), true, type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(List<String> messages) {
+        write(messages, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(String message) {
+        write(Arrays.asList(message), true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printf(String format, Object... args) {
+        printf(VerbosityLevel.NORMAL, format, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printf(VerbosityLevel level, String format, Object... args) {
+        if (getVerbosity().includes(level)) {
+            doWriteTemplate(templates.compile(getFormatter(), format), args, level);
+        }
+    }
+
+    /**
+     * Renders a compiled template and forwards it.
+     *
+     * @param template A compiled template
+     * @param args     The format arguments
+     * @param level    The verbosity level of the message
+     */
+    abstract protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args, VerbosityLevel level);
+}
@@ -0,0 +1,468 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.formatter.ByteSink;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * GzipFileOutput writes the output to a gzip compressed file.
+ *
+ *     GzipFileOutput output = new GzipFileOutput(new File("export.txt.gz"));
+ *
+ * Messages are encoded into a block, handed over to a compressor thread when
+ * full: while the compressor deflates it, messages are encoded into a second
+ * block, so the thread writing the messages only waits for the compressor
+ * when it gets two blocks behind.
+ *
+ * flush() waits for the messages to be compressed and written, except for
+ * what the compressor keeps to compress along with the next ones. close()
+ * completes the file; Application.run() closes its output before exiting.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class GzipFileOutput extends Output implements Closeable {
+
+    /**
+     * The default size of the blocks handed over to the compressor, in bytes.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final Object lock = new Object();
+    private final File file;
+    private final int blockSize;
+    private final BlockingQueue<Block> blocks = new LinkedBlockingQueue<Block>();
+    // Double buffering: the sink fills one block while the other is compressed
+    private final BlockingQueue<ByteBuffer> freeBlocks = new ArrayBlockingQueue<ByteBuffer>(2);
+    private final Thread compressor;
+    private BlockSink sink;
+    private boolean closed = false;
+    private volatile IOException failure;
+
+    /**
+     * Constructor.
+     *
+     * @param file      The file to write the output to
+     * @param level     The compression level, from 0 to 9, or -1 for the
+     *                  default level
+     * @param blockSize The size of the blocks handed over to the compressor,
+     *                  in bytes
+     * @param verbosity The verbosity level
+     * @param decorated Whether to decorate messages or not
+     * @param formatter Output formatter instance
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public GzipFileOutput(File file, int level, int blockSize, VerbosityLevel verbosity, boolean decorated, OutputFormatterInterface formatter) {
+        if (null == file) {
+            throw new IllegalArgumentException("The file cannot be null.");
+        }
+
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format("Invalid compression level %d.", level));
+        }
+
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("The block size must be positive.");
+        }
+
+        this.file = file;
+        this.blockSize = blockSize;
+
+        FileOutputStream stream = null;
+        final GZIPOutputStream out;
+        try {
+            stream = new FileOutputStream(file);
+            out = new LeveledGZIPOutputStream(stream, blockSize, level);
+        } catch (IOException e) {
+            // The header could not be written
+            if (null != stream) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+
+            throw new OutputException(String.format("Unable to open the file \"%s\".", file), e);
+        }
+
+        freeBlocks.add(ByteBuffer.allocate(blockSize));
+        freeBlocks.add(ByteBuffer.allocate(blockSize));
+        sink = new BlockSink(Charset.defaultCharset());
+
+        compressor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                compress(out);
+            }
+        }, "GzipFileOutput compressor");
+        compressor.setDaemon(true);
+        compressor.start();
+
+        init(verbosity, decorated, formatter);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file      The file to write the output to
+     * @param level     The compression level, from 0 to 9, or -1 for the
+     *                  default level
+     * @param verbosity The verbosity level
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public GzipFileOutput(File file, int level, VerbosityLevel verbosity) {
+        this(file, level, DEFAULT_BLOCK_SIZE, verbosity, false, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file      The file to write the output to
+     * @param verbosity The verbosity level
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public GzipFileOutput(File file, VerbosityLevel verbosity) {
+        this(file, Deflater.DEFAULT_COMPRESSION, verbosity);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file The file to write the output to
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public GzipFileOutput(File file) {
+        this(file, VerbosityLevel.NORMAL);
+    }
+
+    /**
+     * Gets the file the output is written to.
+     *
+     * @return The file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Sets the charset the messages are encoded with.
+     *
+     * @param charset The charset of the file
+     */
+    public void setCharset(Charset charset) {
+        synchronized (lock) {
+            try {
+                sink.drain();
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+
+            freeBlocks.add(sink.current);
+            sink = new BlockSink(charset);
+        }
+    }
+
+    /**
+     * Gets the charset the messages are encoded with.
+     *
+     * @return The charset of the file
+     */
+    public Charset getCharset() {
+        return sink.getCharset();
+    }
+
+    /**
+     * Waits for the messages to be compressed and written to the file.
+     *
+     * The compressor may keep the end of the messages until it compresses
+     * the next ones, or until the output is closed.
+     */
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            if (!closed) {
+                awaitBlocks(new Block(null, false));
+            }
+
+            throwFailure();
+        }
+    }
+
+    /**
+     * Writes the messages and completes the file.
+     *
+     * Messages can not be written anymore once the output is closed.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!closed) {
+                closed = true;
+                awaitBlocks(null);
+
+                try {
+                    compressor.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            throwFailure();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWrite(String message, boolean newline) {
+        synchronized (lock) {
+            try {
+                checkOpen();
+                sink.append(message);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteFormatted(String message, boolean newline) {
+        synchronized (lock) {
+            try {
+                checkOpen();
+                getFormatter().formatTo(message, sink);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args) {
+        synchronized (lock) {
+            try {
+                checkOpen();
+                template.renderTo(sink, args);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * Hands over the current block, then a marker, and waits for the
+     * compressor to reach it.
+     *
+     * @param marker The marker, null to stop the compressor
+     */
+    private void awaitBlocks(Block marker) {
+        try {
+            sink.drain();
+        } catch (IOException e) {
+            if (null == failure) {
+                failure = e;
+            }
+        }
+
+        Block last = null == marker ? new Block(null, true) : marker;
+        blocks.add(last);
+
+        try {
+            last.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compresses the blocks until the output is closed, on the compressor
+     * thread.
+     */
+    private void compress(GZIPOutputStream out) {
+        while (true) {
+            Block block;
+            try {
+                block = blocks.take();
+            } catch (InterruptedException e) {
+                // Nobody interrupts the compressor
+                continue;
+            }
+
+            try {
+                if (null != block.bytes) {
+                    ByteBuffer bytes = block.bytes;
+                    if (null == failure) {
+                        out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                    }
+                } else if (block.recycle) {
+                    out.close();
+                } else {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Reported by the thread writing the messages, while the
+                // following blocks are skipped
+                if (null == failure) {
+                    failure = e;
+                }
+            } catch (RuntimeException e) {
+                if (null == failure) {
+                    failure = new IOException("Unable to compress the output.", e);
+                }
+            } finally {
+                if (null != block.bytes && block.recycle) {
+                    block.bytes.clear();
+                    freeBlocks.add(block.bytes);
+                }
+                block.done.countDown();
+            }
+
+            if (null == block.bytes && block.recycle) {
+                return;
+            }
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The output is closed.");
+        }
+
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    private void throwFailure() {
+        IOException e = failure;
+
+        if (null != e) {
+            failure = null;
+            throw new OutputException("Unable to write to the file.", e);
+        }
+    }
+
+    /**
+     * A block of bytes to compress, or a marker when it has no bytes.
+     */
+    private static class Block {
+
+        final ByteBuffer bytes;
+        // Whether the bytes go back to the free blocks, or the marker closes
+        final boolean recycle;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Block(ByteBuffer bytes, boolean recycle) {
+            this.bytes = bytes;
+            this.recycle = recycle;
+        }
+    }
+
+    /**
+     * Hands the full blocks over to the compressor, taking a free one back.
+     */
+    private class BlockSink extends ByteSink {
+
+        private ByteBuffer current;
+
+        BlockSink(Charset charset) {
+            this(charset, freeBlocks.remove());
+        }
+
+        private BlockSink(Charset charset, ByteBuffer buffer) {
+            super(charset, buffer);
+            current = buffer;
+        }
+
+        @Override
+        protected void writeBuffers(ByteBuffer... buffers) throws IOException {
+            for (int i = 0; i < buffers.length; i++) {
+                if (0 == i) {
+                    blocks.add(new Block(buffers[i], true));
+                } else {
+                    // Bytes of the caller, which may reuse them
+                    ByteBuffer copy = ByteBuffer.allocate(buffers[i].remaining());
+                    copy.put(buffers[i]).flip();
+                    blocks.add(new Block(copy, false));
+                }
+            }
+        }
+
+        @Override
+        protected ByteBuffer nextBuffer(ByteBuffer written) throws IOException {
+            try {
+                current = freeBlocks.take();
+
+                return current;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the compressor.");
+            }
+        }
+    }
+
+    /**
+     * A gzip stream compressing at a given level.
+     */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        LeveledGZIPOutputStream(OutputStream out, int size, int level) throws IOException {
+            super(out, size);
+            def.setLevel(level);
+        }
+
+        /**
+         * Releases the deflater and closes the file even when the trailer
+         * can not be written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+                out.close();
+            }
+        }
+    }
+}
@@ -7,8 +7,11 @@
 
 package org.nanocom.console.output;
 
+import java.io.IOException;
 import static org.apache.commons.lang3.SystemUtils.LINE_SEPARATOR;
+import org.nanocom.console.exception.OutputException;
 import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
 
 /**
  * InMemoryOutput keeps written messages in memory.
@@ -58,6 +61,34 @@ public class InMemoryOutput extends Output {
          }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteFormatted(String message, boolean newline) {
+        try {
+            getFormatter().formatTo(message, buffer);
+        } catch (IOException e) {
+            throw new OutputException("Unable to write to the buffer.", e);
+        }
+
+        if (newline) {
+            buffer.append(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args) {
+        try {
+            template.renderTo(buffer, args);
+        } catch (IOException e) {
+            throw new OutputException("Unable to write to the buffer.", e);
+        }
+    }
+
     public StringBuilder getBuffer() {
         return buffer;
     }
@@ -0,0 +1,258 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.formatter.MappedFileSink;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * MappedFileOutput writes the output to a file mapped in memory.
+ *
+ *     MappedFileOutput output = new MappedFileOutput(new File("report.txt"));
+ *     ...
+ *     output.close();
+ *
+ * Messages are encoded straight into a window of the file mapped in memory,
+ * which slides along as the file grows: there is no system call per buffer,
+ * and the operating system writes the pages back when it sees fit. This
+ * suits reports of many gigabytes.
+ *
+ * The file is replaced. It grows by whole windows, and is truncated to its
+ * actual length by close(), which must be called: a file left unclosed, as
+ * after a crash, is padded with zeros. The windows are only unmapped once
+ * garbage collected, so that on Windows close() may fail to truncate the
+ * file. The file is written with the platform charset unless setCharset()
+ * tells otherwise.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class MappedFileOutput extends Output implements Closeable {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final Object lock = new Object();
+    private final File file;
+    private final int windowSize;
+    private final FileChannel channel;
+    private MappedFileSink sink;
+
+    /**
+     * Constructor.
+     *
+     * @param file       The file to write the output to
+     * @param windowSize The size of the window mapped in memory, in bytes
+     * @param verbosity  The verbosity level
+     * @param decorated  Whether to decorate messages or not
+     * @param formatter  Output formatter instance
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public MappedFileOutput(File file, int windowSize, VerbosityLevel verbosity, boolean decorated, OutputFormatterInterface formatter) {
+        if (null == file) {
+            throw new IllegalArgumentException("The file cannot be null.");
+        }
+
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("The window size must be positive.");
+        }
+
+        this.file = file;
+        this.windowSize = windowSize;
+
+        RandomAccessFile random = null;
+        try {
+            random = new RandomAccessFile(file, "rw");
+            channel = random.getChannel();
+            channel.truncate(0);
+            sink = new MappedFileSink(channel, 0, Charset.defaultCharset(), windowSize);
+        } catch (IOException e) {
+            // The file could not be truncated or mapped
+            if (null != random) {
+                try {
+                    random.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+
+            throw new OutputException(String.format("Unable to open the file \"%s\".", file), e);
+        }
+
+        init(verbosity, decorated, formatter);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file      The file to write the output to
+     * @param verbosity The verbosity level
+     * @param decorated Whether to decorate messages or not
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public MappedFileOutput(File file, VerbosityLevel verbosity, boolean decorated) {
+        this(file, MappedFileSink.DEFAULT_WINDOW_SIZE, verbosity, decorated, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file      The file to write the output to
+     * @param verbosity The verbosity level
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public MappedFileOutput(File file, VerbosityLevel verbosity) {
+        this(file, verbosity, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file The file to write the output to
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public MappedFileOutput(File file) {
+        this(file, VerbosityLevel.NORMAL);
+    }
+
+    /**
+     * Gets the file the output is written to.
+     *
+     * @return The file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Sets the charset the messages are encoded with.
+     *
+     * @param charset The charset of the file
+     */
+    public void setCharset(Charset charset) {
+        synchronized (lock) {
+            checkOpen();
+
+            try {
+                sink = new MappedFileSink(channel, sink.getLength(), charset, windowSize);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the charset the messages are encoded with.
+     *
+     * @return The charset of the file
+     */
+    public Charset getCharset() {
+        return sink.getCharset();
+    }
+
+    /**
+     * Gets the number of bytes written to the file.
+     *
+     * @return The length of the file
+     */
+    public long getLength() {
+        synchronized (lock) {
+            return sink.getLength();
+        }
+    }
+
+    /**
+     * Truncates the file to the messages written and closes it.
+     *
+     * Messages can not be written anymore once the output is closed.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!channel.isOpen()) {
+                return;
+            }
+
+            try {
+                sink.close();
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWrite(String message, boolean newline) {
+        synchronized (lock) {
+            checkOpen();
+
+            try {
+                sink.append(message);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteFormatted(String message, boolean newline) {
+        synchronized (lock) {
+            checkOpen();
+
+            try {
+                getFormatter().formatTo(message, sink);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args) {
+        synchronized (lock) {
+            checkOpen();
+
+            try {
+                template.renderTo(sink, args);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("The output is closed.");
+        }
+    }
+}
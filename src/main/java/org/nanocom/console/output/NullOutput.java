@@ -12,6 +12,8 @@ package org.nanocom.console.output;
  *
  *     NullOutput output = new NullOutput();
  *
+ * Messages are neither built nor formatted, whatever the verbosity.
+ *
  * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
  */
 public class NullOutput extends Output {
@@ -20,6 +22,14 @@ public class NullOutput extends Output {
         super();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean accepts(VerbosityLevel level) {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
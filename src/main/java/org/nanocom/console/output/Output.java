@@ -7,20 +7,37 @@
 
 package org.nanocom.console.output;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import org.nanocom.console.formatter.OutputFormatter;
 import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterStream;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
 import org.nanocom.console.output.OutputInterface.OutputType;
 
 /**
  * Base class for output classes.
  *
- * There are three levels of verbosity:
+ * There are five levels of verbosity:
  *
- *  * normal: no option passed (normal output - information)
- *  * verbose: -v (more output - debug)
  *  * quiet: -q (no output)
+ *  * normal: no option passed (normal output - information)
+ *  * verbose: -v (more output)
+ *  * very verbose: -vv (even more output)
+ *  * debug: -vvv (debug output)
+ *
+ * Messages are written at the normal level unless told otherwise, and are
+ * neither built nor formatted when the verbosity does not include their
+ * level.
+ *
+ * A message may also be written in several parts, between begin() and end():
+ *
+ *     output.begin();
+ *     output.write("<info>a long");
+ *     output.write(" message</in");
+ *     output.write("fo> in parts");
+ *     output.end();
  *
  * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
  */
@@ -28,6 +45,12 @@ public abstract class Output implements OutputInterface {
 
     private VerbosityLevel verbosity;
     private OutputFormatterInterface formatter;
+    private final TemplateCache templates = new TemplateCache();
+
+    // The message begun, and its parts formatted so far
+    private final Object streamLock = new Object();
+    private final StringBuilder streamed = new StringBuilder();
+    private volatile OutputFormatterStream stream;
 
     /**
      * Constructor.
@@ -130,6 +153,22 @@ public abstract class Output implements OutputInterface {
         return verbosity;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(String message, VerbosityLevel level) {
+        write(message, true, OutputType.NORMAL, level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeln(MessageSupplier supplier, VerbosityLevel level) {
+        write(supplier, true, OutputType.NORMAL, level);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -163,38 +202,66 @@ public abstract class Output implements OutputInterface {
     }
 
     /**
-     * Writes a message to the output.
+     * Writes a message to the output if the verbosity includes its level.
      *
      * @param messages The message as an array of lines of a single string
      * @param newline  Whether to add a newline or not
      * @param type     The type of output
+     * @param level    The verbosity level of the message
      *
      * @throws IllegalArgumentException When unknown output type is given
      */
     @Override
-    public void write(List<String> messages, boolean newline, OutputType type) {
-        if (VerbosityLevel.QUIET.equals(verbosity)) {
+    public void write(List<String> messages, boolean newline, OutputType type, VerbosityLevel level) {
+        if (!accepts(level)) {
             return;
         }
 
         for (String message : messages) {
             switch (type) {
                 case NORMAL:
-                    message = formatter.format(message);
+                    if (null == stream || !writeStreamed(message, newline)) {
+                        doWriteFormatted(message, newline);
+                    }
                     break;
                 case RAW:
+                    doWrite(message, newline);
                     break;
                 case PLAIN:
-                    message = /*strip_tags(*/formatter.format(message)/*)*/; // TODO
+                    doWrite(formatter.strip(message), newline);
                     break;
                 default:
                     throw new IllegalArgumentException(String.format("Unknown output type given (%s)", type));
             }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(String message, boolean newline, OutputType type, VerbosityLevel level) {
+        write(Arrays.asList(message), newline, type, level);
+    }
 
-            doWrite(message, newline);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(MessageSupplier supplier, boolean newline, OutputType type, VerbosityLevel level) {
+        if (accepts(level)) {
+            write(supplier.get(), newline, type, level);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages, boolean newline, OutputType type) {
+        write(messages, newline, type, VerbosityLevel.NORMAL);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -235,6 +302,130 @@ public abstract class Output implements OutputInterface {
         write(message, false, OutputType.NORMAL);
     }
 
+    /**
+     * Writes a formatted message to the output.
+     *
+     * Templates are compiled on first use and kept for the next calls with
+     * the same format, until the styles of the formatter change.
+     *
+     * @param format The format string
+     * @param args   The format arguments
+     */
+    @Override
+    public void printf(String format, Object... args) {
+        printf(VerbosityLevel.NORMAL, format, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printf(VerbosityLevel level, String format, Object... args) {
+        if (!accepts(level)) {
+            return;
+        }
+
+        doWriteTemplate(templates.compile(formatter, format), args);
+    }
+
+    /**
+     * Begins a message written in several parts.
+     *
+     * Until end() is called, the messages written with the NORMAL type are
+     * formatted as the parts of a single message: a style opened by a part
+     * applies to the next ones, and a tag cut between two parts is kept until
+     * it is complete. Each part is written as soon as it is formatted, like
+     * any other message. Other types and printf() are written as usual.
+     *
+     * @throws IllegalStateException When a message is already begun
+     */
+    public void begin() {
+        synchronized (streamLock) {
+            if (null != stream) {
+                throw new IllegalStateException("A message is already begun.");
+            }
+
+            stream = formatter.begin(streamed);
+        }
+    }
+
+    /**
+     * Ends the message begun, writing what was kept of an incomplete tag.
+     *
+     * Ending when no message is begun has no effect.
+     */
+    public void end() {
+        synchronized (streamLock) {
+            if (null == stream) {
+                return;
+            }
+
+            try {
+                stream.end();
+            } catch (IOException e) {
+                // Never thrown by a StringBuilder
+                throw new IllegalStateException(e);
+            } finally {
+                stream = null;
+            }
+
+            drainStreamed(false);
+        }
+    }
+
+    /**
+     * Writes the buffered messages, if any.
+     *
+     * Outputs are not buffered unless a subclass says otherwise.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Checks whether messages of a level are written to the output.
+     *
+     * @param level The verbosity level of the messages
+     *
+     * @return True if the verbosity includes the level
+     */
+    protected boolean accepts(VerbosityLevel level) {
+        return verbosity.includes(level);
+    }
+
+    /**
+     * Formats a part of the message begun and writes it.
+     *
+     * @return False if no message is begun anymore
+     */
+    private boolean writeStreamed(String message, boolean newline) {
+        synchronized (streamLock) {
+            if (null == stream) {
+                return false;
+            }
+
+            try {
+                stream.write(message);
+            } catch (IOException e) {
+                // Never thrown by a StringBuilder
+                throw new IllegalStateException(e);
+            } finally {
+                // Whatever was formatted is written, even when a tag is invalid
+                drainStreamed(newline);
+            }
+
+            return true;
+        }
+    }
+
+    private void drainStreamed(boolean newline) {
+        if (streamed.length() > 0 || newline) {
+            String formatted = streamed.toString();
+            streamed.setLength(0);
+            doWrite(formatted, newline);
+        }
+    }
+
     /**
      * Writes a message to the output.
      *
@@ -242,4 +433,31 @@ public abstract class Output implements OutputInterface {
      * @param newline Whether to add a newline or not
      */
     abstract protected void doWrite(String message, boolean newline);
+
+    /**
+     * Formats a message and writes it to the output.
+     *
+     * Outputs able to receive the formatted message piece by piece override
+     * this to stream it through OutputFormatterInterface#formatTo() instead
+     * of building it as a String first.
+     *
+     * @param message A message to format and write to the output
+     * @param newline Whether to add a newline or not
+     */
+    protected void doWriteFormatted(String message, boolean newline) {
+        doWrite(formatter.format(message), newline);
+    }
+
+    /**
+     * Renders a compiled template and writes it to the output.
+     *
+     * Outputs able to receive the rendered message piece by piece override
+     * this to stream it through OutputFormatterTemplate#renderTo().
+     *
+     * @param template A compiled template
+     * @param args     The format arguments
+     */
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args) {
+        doWrite(template.render(args), false);
+    }
 }
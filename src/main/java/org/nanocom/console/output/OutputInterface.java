@@ -19,7 +19,31 @@ public interface OutputInterface {
 
     public static enum VerbosityLevel {
 
-        QUIET, NORMAL, VERBOSE;
+        QUIET, NORMAL, VERBOSE, VERY_VERBOSE, DEBUG;
+
+        /**
+         * Checks whether messages of a level are written at this verbosity.
+         *
+         * @param level The level of the messages
+         *
+         * @return True if the level does not exceed this verbosity
+         */
+        public boolean includes(VerbosityLevel level) {
+            return level.compareTo(this) <= 0;
+        }
+    }
+
+    /**
+     * Builds a message only when it is about to be written.
+     */
+    public static interface MessageSupplier {
+
+        /**
+         * Builds the message.
+         *
+         * @return The message
+         */
+        String get();
     }
 
     public static enum OutputType {
@@ -27,6 +51,44 @@ public interface OutputInterface {
         NORMAL, RAW, PLAIN;
     }
 
+    /**
+     * Writes a message to the output if the verbosity includes its level.
+     *
+     * @param messages The message as an array of lines
+     * @param newline  Whether to add a newline or not
+     * @param type     The type of output
+     * @param level    The verbosity level of the message
+     *
+     * @throws IllegalArgumentException When unknown output type is given
+     */
+    void write(List<String> messages, boolean newline, OutputType type, VerbosityLevel level);
+
+    /**
+     * Writes a message to the output if the verbosity includes its level.
+     *
+     * @param message The message as a single string
+     * @param newline Whether to add a newline or not
+     * @param type    The type of output
+     * @param level   The verbosity level of the message
+     *
+     * @throws IllegalArgumentException When unknown output type is given
+     */
+    void write(String message, boolean newline, OutputType type, VerbosityLevel level);
+
+    /**
+     * Writes a message to the output if the verbosity includes its level.
+     *
+     * The message is not built otherwise.
+     *
+     * @param supplier Builds the message as a single string
+     * @param newline  Whether to add a newline or not
+     * @param type     The type of output
+     * @param level    The verbosity level of the message
+     *
+     * @throws IllegalArgumentException When unknown output type is given
+     */
+    void write(MessageSupplier supplier, boolean newline, OutputType type, VerbosityLevel level);
+
     /**
      * Writes a message to the output.
      *
@@ -79,6 +141,26 @@ public interface OutputInterface {
      */
     void write(String message);
 
+    /**
+     * Writes a message to the output and adds a newline at the end, if the
+     * verbosity includes its level.
+     *
+     * @param message The message as a single string
+     * @param level   The verbosity level of the message
+     */
+    void writeln(String message, VerbosityLevel level);
+
+    /**
+     * Writes a message to the output and adds a newline at the end, if the
+     * verbosity includes its level.
+     *
+     * The message is not built otherwise.
+     *
+     * @param supplier Builds the message as a single string
+     * @param level    The verbosity level of the message
+     */
+    void writeln(MessageSupplier supplier, VerbosityLevel level);
+
     /**
      * Writes a message to the output and adds a newline at the end.
      *
@@ -109,6 +191,34 @@ public interface OutputInterface {
      */
     void writeln(String message);
 
+    /**
+     * Writes a formatted message to the output.
+     *
+     * The format is a String.format() format string which may contain style
+     * tags. Arguments are not parsed for style tags.
+     *
+     * @param format The format string
+     * @param args   The format arguments
+     */
+    void printf(String format, Object... args);
+
+    /**
+     * Writes a formatted message to the output if the verbosity includes its
+     * level.
+     *
+     * Neither the format nor the arguments are rendered otherwise.
+     *
+     * @param level  The verbosity level of the message
+     * @param format The format string
+     * @param args   The format arguments
+     */
+    void printf(VerbosityLevel level, String format, Object... args);
+
+    /**
+     * Writes the buffered messages, if any.
+     */
+    void flush();
+
     /**
      * Sets the verbosity of the output.
      *
@@ -0,0 +1,641 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.formatter.ByteSink;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * RotatingFileOutput writes the output to a file, moved aside once it gets
+ * too large or too old.
+ *
+ *     RotatingFileOutput output = new RotatingFileOutput(new File("worker.log"), 64 * 1024 * 1024);
+ *     output.setRotationInterval(TimeUnit.DAYS.toMillis(1));
+ *     output.setMaxFiles(7);
+ *     output.setCompressed(true);
+ *
+ * On rotation the file is renamed after the current time in UTC, as in
+ * worker.log.20240131-235959-999, and a new one is started under the
+ * original name. The thread writing the messages only renames the file and
+ * opens the next one: closing the previous file, compressing it with gzip
+ * and deleting the files beyond the retention limits are left to a
+ * background thread, so that writes are not held up by a rotation.
+ *
+ * The file is rotated before a message once it has reached the maximum
+ * size, which it exceeds by one message at most, or once the rotation
+ * interval has elapsed since it was started. An existing file is appended
+ * to. The file is written with the platform charset unless setCharset()
+ * tells otherwise.
+ *
+ * Errors of the background thread are reported by flush() and close(). The
+ * output should be closed, which Application.run() does before exiting.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class RotatingFileOutput extends Output implements Closeable {
+
+    /**
+     * The extension of the compressed files.
+     */
+    public static final String COMPRESSED_EXTENSION = ".gz";
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static final String TIMESTAMP_PATTERN = "yyyyMMdd-HHmmss-SSS";
+
+    private final Object lock = new Object();
+    private final File file;
+    private final ExecutorService archiver;
+    private volatile long maxSize;
+    private volatile long rotationInterval = 0;
+    private volatile int maxFiles = 0;
+    private volatile long maxAge = 0;
+    private volatile boolean compressed = false;
+    private FileSink sink;
+    private OutputStream stream;
+    private long length;
+    private long started;
+    private boolean closed = false;
+    private volatile IOException failure;
+
+    /**
+     * Constructor.
+     *
+     * @param file      The file to write the output to
+     * @param maxSize   The size of the file triggering a rotation, in bytes,
+     *                  0 to rotate on time only
+     * @param verbosity The verbosity level
+     * @param decorated Whether to decorate messages or not
+     * @param formatter Output formatter instance
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public RotatingFileOutput(File file, long maxSize, VerbosityLevel verbosity, boolean decorated, OutputFormatterInterface formatter) {
+        if (null == file) {
+            throw new IllegalArgumentException("The file cannot be null.");
+        }
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The maximum size cannot be negative.");
+        }
+
+        this.file = file.getAbsoluteFile();
+        this.maxSize = maxSize;
+
+        try {
+            open();
+        } catch (IOException e) {
+            throw new OutputException(String.format("Unable to open the file \"%s\".", file), e);
+        }
+
+        sink = new FileSink(Charset.defaultCharset());
+
+        archiver = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RotatingFileOutput archiver");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        init(verbosity, decorated, formatter);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file      The file to write the output to
+     * @param maxSize   The size of the file triggering a rotation, in bytes,
+     *                  0 to rotate on time only
+     * @param verbosity The verbosity level
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public RotatingFileOutput(File file, long maxSize, VerbosityLevel verbosity) {
+        this(file, maxSize, verbosity, false, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file    The file to write the output to
+     * @param maxSize The size of the file triggering a rotation, in bytes,
+     *                0 to rotate on time only
+     *
+     * @throws OutputException When the file can not be opened
+     */
+    public RotatingFileOutput(File file, long maxSize) {
+        this(file, maxSize, VerbosityLevel.NORMAL);
+    }
+
+    /**
+     * Gets the file the output is written to.
+     *
+     * @return The file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Sets the size of the file triggering a rotation.
+     *
+     * @param maxSize The size, in bytes, 0 to rotate on time only
+     */
+    public void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The maximum size cannot be negative.");
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the size of the file triggering a rotation.
+     *
+     * @return The size, in bytes, 0 if the file is rotated on time only
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the time after which a file is rotated.
+     *
+     * @param rotationInterval The time, in milliseconds, 0 to rotate on size
+     *                         only
+     */
+    public void setRotationInterval(long rotationInterval) {
+        if (rotationInterval < 0) {
+            throw new IllegalArgumentException("The rotation interval cannot be negative.");
+        }
+
+        this.rotationInterval = rotationInterval;
+    }
+
+    /**
+     * Gets the time after which a file is rotated.
+     *
+     * @return The time, in milliseconds, 0 if the file is rotated on size only
+     */
+    public long getRotationInterval() {
+        return rotationInterval;
+    }
+
+    /**
+     * Sets the number of rotated files kept, the oldest ones being deleted.
+     *
+     * @param maxFiles The number of files, 0 to keep them all
+     */
+    public void setMaxFiles(int maxFiles) {
+        if (maxFiles < 0) {
+            throw new IllegalArgumentException("The maximum number of files cannot be negative.");
+        }
+
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Gets the number of rotated files kept.
+     *
+     * @return The number of files, 0 if they are all kept
+     */
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    /**
+     * Sets the time after which rotated files are deleted.
+     *
+     * @param maxAge The time since the files were last modified, in
+     *               milliseconds, 0 to keep them whatever their age
+     */
+    public void setMaxAge(long maxAge) {
+        if (maxAge < 0) {
+            throw new IllegalArgumentException("The maximum age cannot be negative.");
+        }
+
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Gets the time after which rotated files are deleted.
+     *
+     * @return The time, in milliseconds, 0 if files are kept whatever their age
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Sets whether the rotated files are compressed with gzip.
+     *
+     * @param compressed Whether to compress the rotated files
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Checks whether the rotated files are compressed with gzip.
+     *
+     * @return True if the rotated files are compressed
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Sets the charset the messages are encoded with.
+     *
+     * @param charset The charset of the file
+     */
+    public void setCharset(Charset charset) {
+        synchronized (lock) {
+            try {
+                sink.drain();
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+
+            sink = new FileSink(charset);
+        }
+    }
+
+    /**
+     * Gets the charset the messages are encoded with.
+     *
+     * @return The charset of the file
+     */
+    public Charset getCharset() {
+        return sink.getCharset();
+    }
+
+    /**
+     * Moves the file aside and starts a new one, whatever its size or age.
+     *
+     * @throws OutputException When the file can not be rotated
+     */
+    public void rotate() {
+        synchronized (lock) {
+            try {
+                checkOpen();
+                doRotate();
+            } catch (IOException e) {
+                throw new OutputException(String.format("Unable to rotate the file \"%s\".", file), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered messages to the file.
+     *
+     * @throws OutputException When the messages could not be written, or a
+     *                         rotated file could not be archived
+     */
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            if (!closed) {
+                try {
+                    sink.flush();
+                } catch (IOException e) {
+                    throw new OutputException("Unable to write to the file.", e);
+                }
+            }
+
+            throwFailure();
+        }
+    }
+
+    /**
+     * Writes the buffered messages, closes the file and waits for the
+     * rotated files to be archived.
+     *
+     * Messages can not be written anymore once the output is closed.
+     *
+     * @throws OutputException When the messages could not be written, or a
+     *                         rotated file could not be archived
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!closed) {
+                closed = true;
+
+                try {
+                    sink.drain();
+                } catch (IOException e) {
+                    fail(e);
+                } finally {
+                    closeQuietly(stream);
+                }
+
+                archiver.shutdown();
+                try {
+                    archiver.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            throwFailure();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWrite(String message, boolean newline) {
+        synchronized (lock) {
+            try {
+                prepare();
+                sink.append(message);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteFormatted(String message, boolean newline) {
+        synchronized (lock) {
+            try {
+                prepare();
+                getFormatter().formatTo(message, sink);
+                if (newline) {
+                    sink.append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args) {
+        synchronized (lock) {
+            try {
+                prepare();
+                template.renderTo(sink, args);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the file.", e);
+            }
+        }
+    }
+
+    /**
+     * Rotates the file before a message if it is due.
+     */
+    private void prepare() throws IOException {
+        checkOpen();
+
+        long size = maxSize;
+        long interval = rotationInterval;
+        long current = length + sink.size();
+        boolean expired = interval > 0 && System.currentTimeMillis() - started >= interval;
+
+        if (0 == current) {
+            // Empty files are not rotated, but restarted
+            if (expired) {
+                started = System.currentTimeMillis();
+            }
+        } else if ((size > 0 && current >= size) || expired) {
+            doRotate();
+        }
+    }
+
+    private void doRotate() throws IOException {
+        sink.drain();
+
+        final OutputStream previous = stream;
+        final File rotated = rotatedFile();
+
+        // Renaming an open file is not allowed everywhere
+        boolean renamed = file.renameTo(rotated);
+        if (!renamed) {
+            previous.close();
+            if (!file.renameTo(rotated)) {
+                // Go on writing to the file, to be rotated again later
+                open();
+                throw new IOException(String.format("Unable to rename the file to \"%s\".", rotated));
+            }
+        }
+
+        open();
+
+        archiver.execute(new Runnable() {
+            @Override
+            public void run() {
+                archive(previous, rotated);
+            }
+        });
+    }
+
+    private void open() throws IOException {
+        stream = new FileOutputStream(file, true);
+        length = file.length();
+        started = System.currentTimeMillis();
+    }
+
+    private File rotatedFile() {
+        SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_PATTERN);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long time = System.currentTimeMillis();
+        File rotated;
+
+        // Rotated twice in the same millisecond: the names keep sorting in
+        // the order of the rotations as long as they are the same length
+        do {
+            rotated = new File(file.getParentFile(), file.getName() + '.' + format.format(new Date(time++)));
+        } while (rotated.exists() || new File(rotated.getPath() + COMPRESSED_EXTENSION).exists());
+
+        return rotated;
+    }
+
+    /**
+     * Closes, compresses and prunes the rotated files, on the archiver thread.
+     */
+    private void archive(OutputStream previous, File rotated) {
+        try {
+            previous.close();
+
+            if (compressed) {
+                compress(rotated);
+            }
+
+            prune(rotated);
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException(String.format("Unable to archive the file \"%s\".", rotated), e));
+        }
+    }
+
+    private void compress(File rotated) throws IOException {
+        File target = new File(rotated.getPath() + COMPRESSED_EXTENSION);
+        File temporary = new File(rotated.getPath() + COMPRESSED_EXTENSION + ".tmp");
+
+        InputStream in = new FileInputStream(rotated);
+        try {
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(temporary), ByteSink.DEFAULT_CAPACITY);
+            try {
+                byte[] buffer = new byte[ByteSink.DEFAULT_CAPACITY];
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        if (!temporary.renameTo(target)) {
+            throw new IOException(String.format("Unable to rename the file to \"%s\".", target));
+        }
+
+        target.setLastModified(rotated.lastModified());
+
+        if (!rotated.delete()) {
+            throw new IOException(String.format("Unable to delete the file \"%s\".", rotated));
+        }
+    }
+
+    /**
+     * Deletes the rotated files beyond the retention limits, up to the last
+     * archived one: the following ones are left to their own archiving.
+     */
+    private void prune(File archived) throws IOException {
+        final String prefix = file.getName() + '.';
+        File directory = file.getParentFile();
+        File[] rotated = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File directory, String name) {
+                return name.startsWith(prefix) && name.length() > prefix.length()
+                    && Character.isDigit(name.charAt(prefix.length())) && !name.endsWith(".tmp");
+            }
+        });
+
+        if (null == rotated) {
+            throw new IOException(String.format("Unable to list the directory \"%s\".", directory));
+        }
+
+        // The names start with the time of the rotation: oldest first
+        Arrays.sort(rotated);
+
+        int files = maxFiles;
+        long age = maxAge;
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < rotated.length; i++) {
+            String name = rotated[i].getName();
+            if (name.endsWith(COMPRESSED_EXTENSION)) {
+                name = name.substring(0, name.length() - COMPRESSED_EXTENSION.length());
+            }
+
+            if (name.compareTo(archived.getName()) > 0) {
+                break;
+            }
+
+            boolean expired = (files > 0 && rotated.length - i > files)
+                || (age > 0 && now - rotated[i].lastModified() > age);
+
+            if (expired && !rotated[i].delete()) {
+                throw new IOException(String.format("Unable to delete the file \"%s\".", rotated[i]));
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The output is closed.");
+        }
+    }
+
+    private void fail(IOException e) {
+        if (null == failure) {
+            failure = e;
+        }
+    }
+
+    private void throwFailure() {
+        IOException e = failure;
+
+        if (null != e) {
+            failure = null;
+            throw new OutputException("Unable to write to the file.", e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to write
+        }
+    }
+
+    /**
+     * Writes the bytes to the current file, counting them.
+     */
+    private class FileSink extends ByteSink {
+
+        FileSink(Charset charset) {
+            super(charset, DEFAULT_CAPACITY, false);
+        }
+
+        @Override
+        protected void writeBuffers(ByteBuffer... buffers) throws IOException {
+            for (ByteBuffer bytes : buffers) {
+                stream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                length += bytes.remaining();
+                bytes.position(bytes.limit());
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            stream.flush();
+        }
+    }
+}
@@ -7,9 +7,19 @@
 
 package org.nanocom.console.output;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 import static org.apache.commons.lang3.SystemUtils.IS_OS_WINDOWS;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.formatter.ByteSink;
+import org.nanocom.console.formatter.ColorDepth;
 import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
 
 /**
  * StreamOutput writes the output to a given stream.
@@ -22,11 +32,44 @@ import org.nanocom.console.formatter.OutputFormatterInterface;
  *
  * OutputInterface output = new StreamOutput(fopen('/path/to/output.log', 'a', false));
  *
+ * Messages are buffered and printed to the stream, which encodes them with
+ * its own charset. Once setCharset() tells the charset of the stream, they
+ * are rather encoded into a reusable buffer, so that ASCII text and escape
+ * sequences are copied as bytes: ConsoleOutput does so with the charset of
+ * the standard streams.
+ *
+ * The buffer is written and the stream flushed according to a FlushPolicy.
+ * Standard output is flushed after each line when it is a terminal, and when
+ * enough has been buffered otherwise; other streams are flushed after each
+ * message. Buffered messages are flushed when the JVM exits normally.
+ *
  * @author Arnaud Kleinpeter <arnaud.kleinpeter at jump-informatique dot com>
  */
 public class StreamOutput extends Output {
 
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * The default number of buffered bytes triggering a flush with the SIZE policy.
+     */
+    public static final int DEFAULT_FLUSH_SIZE = 4096;
+
+    /**
+     * The default time between flushes with the INTERVAL policy, in milliseconds.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    // Outputs which may hold buffered messages when the JVM exits
+    private static Set<StreamOutput> bufferedOutputs;
+
+    private final Object lock = new Object();
     private PrintStream stream;
+    private TextSink text;
+    private ByteSink sink;
+    private volatile FlushPolicy flushPolicy = FlushPolicy.ALWAYS;
+    private volatile int flushSize = DEFAULT_FLUSH_SIZE;
+    private volatile long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private long lastFlush = System.nanoTime();
 
    /**
     * Constructor.
@@ -44,12 +87,18 @@ public class StreamOutput extends Output {
         }
 
         this.stream = stream;
+        this.text = new TextSink(stream);
+        setFlushPolicy(getDefaultFlushPolicy(stream));
 
         if (null == decorated) {
             decorated = hasColorSupport();
         }
 
         init(verbosity, decorated, formatter);
+
+        if (null == formatter) {
+            getFormatter().setColorDepth(ColorDepth.detect());
+        }
     }
 
    /**
@@ -104,18 +153,263 @@ public class StreamOutput extends Output {
         return stream;
     }
 
+    /**
+     * Sets the charset the stream encodes text with, so that messages are
+     * encoded by the output rather than printed.
+     *
+     * The messages are still printed to the stream as text if the charset
+     * does not encode ASCII characters as single bytes.
+     *
+     * @param charset The charset of the stream
+     */
+    public void setCharset(Charset charset) {
+        synchronized (lock) {
+            flushQuietly();
+            sink = ByteSink.isAsciiCompatible(charset) ? new ByteSink(stream, charset) : null;
+        }
+    }
+
+    /**
+     * Gets the charset the messages are encoded with.
+     *
+     * @return The charset, null if the messages are printed to the stream as
+     *         text
+     */
+    public Charset getCharset() {
+        synchronized (lock) {
+            return null == sink ? null : sink.getCharset();
+        }
+    }
+
+    /**
+     * Sets when the stream is flushed.
+     *
+     * @param flushPolicy The flush policy
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        if (null == flushPolicy) {
+            throw new IllegalArgumentException("The flush policy cannot be null.");
+        }
+
+        this.flushPolicy = flushPolicy;
+
+        if (FlushPolicy.ALWAYS != flushPolicy) {
+            registerBufferedOutput(this);
+        }
+    }
+
+    /**
+     * Gets when the stream is flushed.
+     *
+     * @return The flush policy
+     */
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    /**
+     * Sets the number of buffered bytes triggering a flush with the SIZE
+     * policy.
+     *
+     * The buffer is written anyway when it is full, at 8192 bytes or
+     * characters.
+     *
+     * @param flushSize The number of bytes
+     */
+    public void setFlushSize(int flushSize) {
+        if (flushSize < 1) {
+            throw new IllegalArgumentException("The flush size must be positive.");
+        }
+
+        this.flushSize = flushSize;
+    }
+
+    /**
+     * Gets the number of buffered bytes triggering a flush with the SIZE
+     * policy.
+     *
+     * @return The number of bytes
+     */
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    /**
+     * Sets the time between flushes with the INTERVAL policy.
+     *
+     * The time is checked when a message is written: messages written
+     * before a pause wait for the next message or for flush().
+     *
+     * @param flushInterval The time, in milliseconds
+     */
+    public void setFlushInterval(long flushInterval) {
+        if (flushInterval < 0) {
+            throw new IllegalArgumentException("The flush interval cannot be negative.");
+        }
+
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Gets the time between flushes with the INTERVAL policy.
+     *
+     * @return The time, in milliseconds
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            try {
+                doFlush();
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the stream.", e);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void doWrite(String message, boolean newline) {
-        if (newline) {
-            stream.println(message);
+        synchronized (lock) {
+            try {
+                Appendable out = null == sink ? text : sink;
+                out.append(message);
+                if (newline) {
+                    out.append(LINE_SEPARATOR);
+                }
+
+                afterWrite(newline || message.indexOf('\n') >= 0);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the stream.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteFormatted(String message, boolean newline) {
+        synchronized (lock) {
+            try {
+                Appendable out = null == sink ? text : sink;
+                getFormatter().formatTo(message, out);
+                if (newline) {
+                    out.append(LINE_SEPARATOR);
+                }
+
+                afterWrite(newline || message.indexOf('\n') >= 0);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the stream.", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args) {
+        synchronized (lock) {
+            try {
+                Appendable out = null == sink ? text : sink;
+                boolean lineEnded = template.hasLineBreak();
+
+                if (lineEnded || FlushPolicy.NEWLINE != flushPolicy) {
+                    template.renderTo(out, args);
+                } else {
+                    // The arguments may contain line breaks too
+                    String rendered = template.render(args);
+                    out.append(rendered);
+                    lineEnded = rendered.indexOf('\n') >= 0;
+                }
+
+                afterWrite(lineEnded);
+            } catch (IOException e) {
+                throw new OutputException("Unable to write to the stream.", e);
+            }
+        }
+    }
+
+    private void afterWrite(boolean lineEnded) throws IOException {
+        boolean flush;
+
+        switch (flushPolicy) {
+            case ALWAYS:
+                flush = true;
+                break;
+            case NEWLINE:
+                flush = lineEnded;
+                break;
+            case SIZE:
+                flush = (null == sink ? text.size() : sink.size()) >= flushSize;
+                break;
+            case INTERVAL:
+                flush = System.nanoTime() - lastFlush >= TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                break;
+            default:
+                flush = false;
+                break;
+        }
+
+        if (flush) {
+            doFlush();
+        }
+    }
+
+    private void doFlush() throws IOException {
+        if (null == sink) {
+            text.flush();
         } else {
-            stream.print(message);
+            sink.flush();
+        }
+
+        lastFlush = System.nanoTime();
+    }
+
+    private void flushQuietly() {
+        try {
+            doFlush();
+        } catch (IOException e) {
+            // The JVM is exiting or the charset changing: nothing to report to
+        }
+    }
+
+    private static FlushPolicy getDefaultFlushPolicy(PrintStream stream) {
+        if (System.out != stream) {
+            return FlushPolicy.ALWAYS;
+        }
+
+        return null == System.console() ? FlushPolicy.SIZE : FlushPolicy.NEWLINE;
+    }
+
+    private static synchronized void registerBufferedOutput(StreamOutput output) {
+        if (null == bufferedOutputs) {
+            bufferedOutputs = Collections.newSetFromMap(new WeakHashMap<StreamOutput, Boolean>());
+
+            Runtime.getRuntime().addShutdownHook(new Thread("StreamOutput flush") {
+                @Override
+                public void run() {
+                    synchronized (StreamOutput.class) {
+                        for (StreamOutput output : bufferedOutputs) {
+                            synchronized (output.lock) {
+                                output.flushQuietly();
+                            }
+                        }
+                    }
+                }
+            });
         }
 
-        stream.flush();
+        bufferedOutputs.add(output);
     }
 
     /**
@@ -135,4 +429,67 @@ public class StreamOutput extends Output {
 
         return null != System.console(); // FIXME
     }
+
+    /**
+     * Buffers the messages printed to the stream.
+     */
+    private static class TextSink implements Appendable {
+
+        private final PrintStream stream;
+        private final StringBuilder buffer = new StringBuilder();
+
+        TextSink(PrintStream stream) {
+            this.stream = stream;
+        }
+
+        int size() {
+            return buffer.length();
+        }
+
+        @Override
+        public TextSink append(CharSequence text) {
+            buffer.append(text);
+            drainIfFull();
+
+            return this;
+        }
+
+        @Override
+        public TextSink append(CharSequence text, int start, int end) {
+            buffer.append(text, start, end);
+            drainIfFull();
+
+            return this;
+        }
+
+        @Override
+        public TextSink append(char c) {
+            buffer.append(c);
+            drainIfFull();
+
+            return this;
+        }
+
+        void flush() throws IOException {
+            drain();
+            stream.flush();
+
+            if (stream.checkError()) {
+                throw new IOException("Unable to print to the stream.");
+            }
+        }
+
+        private void drain() {
+            if (buffer.length() > 0) {
+                stream.print(buffer);
+                buffer.setLength(0);
+            }
+        }
+
+        private void drainIfFull() {
+            if (buffer.length() >= ByteSink.DEFAULT_CAPACITY) {
+                drain();
+            }
+        }
+    }
 }
@@ -0,0 +1,276 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.formatter.OutputFormatter;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * TeeOutput writes the messages to several outputs at once.
+ *
+ *     OutputInterface output = new TeeOutput(new ConsoleOutput(), new StreamOutput(log));
+ *
+ * Each message is formatted once by the formatter of the tee, which renders
+ * it both with its styles, written to the decorated outputs, and without,
+ * written to the others. Each output only receives the messages its own
+ * verbosity includes; setting the verbosity of the tee sets the verbosity of
+ * all of them.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class TeeOutput extends ForwardingOutput implements Closeable {
+
+    private final List<OutputInterface> outputs;
+    private volatile OutputFormatterInterface formatter;
+
+    /**
+     * Constructor.
+     *
+     * @param outputs The outputs to write the messages to
+     */
+    public TeeOutput(OutputInterface... outputs) {
+        for (OutputInterface output : outputs) {
+            if (null == output) {
+                throw new IllegalArgumentException("The outputs cannot be null.");
+            }
+        }
+
+        this.outputs = Collections.unmodifiableList(new ArrayList<OutputInterface>(Arrays.asList(outputs)));
+        setFormatter(new OutputFormatter());
+    }
+
+    /**
+     * Gets the outputs the messages are written to.
+     *
+     * @return The outputs
+     */
+    public List<OutputInterface> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages, boolean newline, OutputType type, VerbosityLevel level) {
+        boolean decorated = false;
+        boolean plain = false;
+
+        for (OutputInterface output : outputs) {
+            if (output.getVerbosity().includes(level)) {
+                if (output.isDecorated()) {
+                    decorated = true;
+                } else {
+                    plain = true;
+                }
+            }
+        }
+
+        if (!decorated && !plain) {
+            return;
+        }
+
+        for (String message : messages) {
+            String styled;
+            String stripped;
+
+            switch (type) {
+                case NORMAL:
+                    if (decorated && plain) {
+                        StringBuilder styledBuilder = new StringBuilder(message.length() + 16);
+                        StringBuilder strippedBuilder = new StringBuilder(message.length());
+                        try {
+                            formatter.formatTo(message, styledBuilder, strippedBuilder);
+                        } catch (IOException e) {
+                            // Never thrown by a StringBuilder
+                            throw new OutputException("Unable to format the message.", e);
+                        }
+                        styled = styledBuilder.toString();
+                        stripped = strippedBuilder.toString();
+                    } else if (decorated) {
+                        styled = formatter.format(message);
+                        stripped = null;
+                    } else {
+                        styled = null;
+                        stripped = formatter.strip(message);
+                    }
+                    break;
+                case RAW:
+                    styled = stripped = message;
+                    break;
+                case PLAIN:
+                    styled = stripped = formatter.strip(message);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown output type given (%s)", type));
+            }
+
+            writeRendered(styled, stripped, newline, level);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args, VerbosityLevel level) {
+        StringBuilder styled = new StringBuilder();
+        StringBuilder stripped = new StringBuilder();
+        try {
+            template.renderTo(styled, stripped, args);
+        } catch (IOException e) {
+            // Never thrown by a StringBuilder
+            throw new OutputException("Unable to format the message.", e);
+        }
+
+        writeRendered(styled.toString(), stripped.toString(), false, level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        for (OutputInterface output : outputs) {
+            output.flush();
+        }
+    }
+
+    /**
+     * Closes the outputs which can be closed, and flushes the others.
+     *
+     * All the outputs are closed or flushed even when one of them fails: the
+     * first failure is thrown afterwards.
+     *
+     * @throws OutputException When an output could not be closed or flushed
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+
+        for (OutputInterface output : outputs) {
+            try {
+                if (output instanceof Closeable) {
+                    ((Closeable) output).close();
+                } else {
+                    output.flush();
+                }
+            } catch (IOException e) {
+                if (null == failure) {
+                    failure = new OutputException("Unable to close the output.", e);
+                }
+            } catch (RuntimeException e) {
+                if (null == failure) {
+                    failure = e;
+                }
+            }
+        }
+
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Sets the verbosity of all the outputs.
+     *
+     * @param level The level of verbosity
+     */
+    @Override
+    public void setVerbosity(VerbosityLevel level) {
+        for (OutputInterface output : outputs) {
+            output.setVerbosity(level);
+        }
+    }
+
+    /**
+     * Gets the verbosity of the most verbose output.
+     *
+     * @return The level of verbosity
+     */
+    @Override
+    public VerbosityLevel getVerbosity() {
+        VerbosityLevel verbosity = VerbosityLevel.QUIET;
+
+        for (OutputInterface output : outputs) {
+            if (!verbosity.includes(output.getVerbosity())) {
+                verbosity = output.getVerbosity();
+            }
+        }
+
+        return verbosity;
+    }
+
+    /**
+     * Sets the decorated flag of all the outputs.
+     *
+     * @param decorated Whether to decorate the messages or not
+     */
+    @Override
+    public void setDecorated(boolean decorated) {
+        for (OutputInterface output : outputs) {
+            output.setDecorated(decorated);
+        }
+    }
+
+    /**
+     * Checks whether an output decorates the messages.
+     *
+     * @return True if an output decorates the messages, false otherwise
+     */
+    @Override
+    public boolean isDecorated() {
+        for (OutputInterface output : outputs) {
+            if (output.isDecorated()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sets the formatter which formats the messages for all the outputs.
+     *
+     * The formatter is decorated: the messages are stripped for the outputs
+     * which are not.
+     *
+     * @param formatter The formatter
+     */
+    @Override
+    public void setFormatter(OutputFormatterInterface formatter) {
+        formatter.setDecorated(true);
+        this.formatter = formatter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputFormatterInterface getFormatter() {
+        return formatter;
+    }
+
+    private void writeRendered(String styled, String stripped, boolean newline, VerbosityLevel level) {
+        for (OutputInterface output : outputs) {
+            if (output.getVerbosity().includes(level)) {
+                // Either rendering will do if the output changed meanwhile
+                String message = output.isDecorated() ? styled : stripped;
+                output.write(null == message ? (null == styled ? stripped : styled) : message, newline, OutputType.RAW, level);
+            }
+        }
+    }
+}
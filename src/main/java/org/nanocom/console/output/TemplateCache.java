@@ -0,0 +1,69 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+
+/**
+ * Templates compiled by an output for printf(), least recently used first.
+ *
+ * Compiled templates hold the styles resolved at that time: they are
+ * discarded when the formatter changes, or when its generation does.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+class TemplateCache {
+
+    /**
+     * Maximum number of compiled templates kept.
+     */
+    private static final int SIZE = 64;
+
+    private final Map<String, OutputFormatterTemplate> templates = new LinkedHashMap<String, OutputFormatterTemplate>(16, 0.75f, true) {
+
+        static final long serialVersionUID = 2937610356432619514L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OutputFormatterTemplate> eldest) {
+            return size() > SIZE;
+        }
+    };
+
+    private OutputFormatterInterface formatter;
+    private int generation;
+
+    /**
+     * Gets the template compiled from a format, compiling it if needed.
+     *
+     * @param formatter The formatter compiling the template
+     * @param format    The format string
+     *
+     * @return The compiled template
+     */
+    synchronized OutputFormatterTemplate compile(OutputFormatterInterface formatter, String format) {
+        // Read first: a change while compiling discards the template next time
+        int current = formatter.getGeneration();
+
+        if (formatter != this.formatter || current != generation) {
+            templates.clear();
+            this.formatter = formatter;
+            this.generation = current;
+        }
+
+        OutputFormatterTemplate template = templates.get(format);
+        if (null == template) {
+            template = formatter.compile(format);
+            templates.put(format, template);
+        }
+
+        return template;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.util.List;
+import org.nanocom.console.formatter.OutputFormatterInterface;
+import org.nanocom.console.formatter.OutputFormatterTemplate;
+import org.nanocom.console.formatter.WordWrapper;
+
+/**
+ * WordWrapOutput wraps the messages written to another output to a number
+ * of columns, typically the width of the terminal.
+ *
+ *     OutputInterface output = new WordWrapOutput(new ConsoleOutput(), 80);
+ *
+ * Messages are cut between words as they are written, and each line is
+ * written to the wrapped output as soon as it is complete.
+ *
+ * @author Arnaud Kleinpeter <arnaud.kleinpeter at gmail dot com>
+ */
+public class WordWrapOutput extends ForwardingOutput {
+
+    private final OutputInterface output;
+    private final WordWrapper wrapper;
+    private OutputType type = OutputType.NORMAL;
+    private VerbosityLevel level = VerbosityLevel.NORMAL;
+
+    /**
+     * Constructor.
+     *
+     * @param output The output to write the lines to
+     * @param width  The number of columns
+     */
+    public WordWrapOutput(OutputInterface output, int width) {
+        this.output = output;
+        this.wrapper = new WordWrapper(null, width) {
+            @Override
+            public OutputFormatterInterface getFormatter() {
+                return WordWrapOutput.this.output.getFormatter();
+            }
+
+            @Override
+            protected void writeLine(String line, boolean newline) {
+                WordWrapOutput.this.output.write(line, newline, type, level);
+            }
+        };
+    }
+
+    /**
+     * Gets the output the lines are written to.
+     *
+     * @return The wrapped output
+     */
+    public OutputInterface getOutput() {
+        return output;
+    }
+
+    /**
+     * Gets the number of columns.
+     *
+     * @return The number of columns
+     */
+    public int getWidth() {
+        return wrapper.getWidth();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<String> messages, boolean newline, OutputType type, VerbosityLevel level) {
+        if (!getVerbosity().includes(level)) {
+            return;
+        }
+
+        this.level = level;
+
+        for (String message : messages) {
+            switch (type) {
+                case NORMAL:
+                    this.type = OutputType.NORMAL;
+                    wrapper.write(message, newline);
+                    break;
+                case RAW:
+                    this.type = OutputType.RAW;
+                    wrapper.writeRaw(message, newline);
+                    break;
+                case PLAIN:
+                    this.type = OutputType.RAW;
+                    wrapper.writeRaw(getFormatter().strip(message), newline);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown output type given (%s)", type));
+            }
+        }
+    }
+
+    /**
+     * Renders a template and wraps it.
+     *
+     * The message is rendered, then wrapped: the styles are kept across the
+     * lines by the escape sequences themselves.
+     *
+     * @param template A compiled template
+     * @param args     The format arguments
+     * @param level    The verbosity level of the message
+     */
+    @Override
+    protected void doWriteTemplate(OutputFormatterTemplate template, Object[] args, VerbosityLevel level) {
+        this.type = OutputType.RAW;
+        this.level = level;
+        wrapper.writeRaw(template.render(args), false);
+    }
+
+    /**
+     * Writes the buffered messages of the wrapped output.
+     *
+     * The end of a line which is not complete has already been written to
+     * it.
+     */
+    @Override
+    public void flush() {
+        output.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVerbosity(VerbosityLevel level) {
+        output.setVerbosity(level);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VerbosityLevel getVerbosity() {
+        return output.getVerbosity();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDecorated(boolean decorated) {
+        output.setDecorated(decorated);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDecorated() {
+        return output.isDecorated();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFormatter(OutputFormatterInterface formatter) {
+        output.setFormatter(formatter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputFormatterInterface getFormatter() {
+        return output.getFormatter();
+    }
+}
@@ -24,6 +24,7 @@ import org.nanocom.console.command.Command;
 import org.nanocom.console.command.Executable;
 import org.nanocom.console.command.HelpCommand;
 import org.nanocom.console.exception.LogicException;
+import org.nanocom.console.exception.OutputException;
 import org.nanocom.console.fixtures.Foo1Command;
 import org.nanocom.console.fixtures.Foo2Command;
 import org.nanocom.console.fixtures.Foo3Command;
@@ -39,6 +40,7 @@ import org.nanocom.console.input.InputInterface;
 import org.nanocom.console.input.InputOption;
 import org.nanocom.console.input.InputParameterInterface;
 import org.nanocom.console.output.ConsoleOutput;
+import org.nanocom.console.output.InMemoryOutput;
 import org.nanocom.console.output.NullOutput;
 import org.nanocom.console.output.Output;
 import org.nanocom.console.output.OutputInterface;
@@ -556,6 +558,14 @@ public class ApplicationTest {
         tester.run(input, new HashMap<String, Object>());
         assertSame("run() sets the output to verbose if -v is passed", Output.VerbosityLevel.VERBOSE, tester.getOutput().getVerbosity());
 
+        OutputInterface output = new NullOutput();
+        application.run(new ArgsInput(new String[] {"list", "-vv"}), output);
+        assertSame("run() sets the output to very verbose if -vv is passed", Output.VerbosityLevel.VERY_VERBOSE, output.getVerbosity());
+
+        output = new NullOutput();
+        application.run(new ArgsInput(new String[] {"list", "-vvv"}), output);
+        assertSame("run() sets the output to debug if -vvv is passed", Output.VerbosityLevel.DEBUG, output.getVerbosity());
+
         application = new Application();
         application.setAutoExit(false);
         application.setCatchExceptions(false);
@@ -574,6 +584,37 @@ public class ApplicationTest {
         assertEquals("run() does not call interact() if -n is passed", "called" + LINE_SEPARATOR, tester.getDisplay());
     }
 
+    @Test
+    public void testRunCompletesOutput() {
+        Application application = new Application();
+        application.setAutoExit(false);
+        application.setCatchExceptions(false);
+
+        final int[] flushes = {0};
+        OutputInterface output = new InMemoryOutput() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+
+        try {
+            application.run(new ArgsInput(new String[] {"foo"}), output);
+            fail("run() does not catch exceptions if told not to");
+        } catch (IllegalArgumentException e) {
+            assertEquals("run() flushes the output even when an exception escapes", 1, flushes[0]);
+        }
+
+        output = new InMemoryOutput() {
+            @Override
+            public void flush() {
+                throw new OutputException("Unable to write to the output.", new IOException("broken"));
+            }
+        };
+
+        assertTrue("run() reports an output failing to complete as an error", 0 != application.run(new ArgsInput(new String[] {"list"}), output));
+    }
+
     @Test(expected=LogicException.class)
     public void testAddingAlreadySetDefinitionElementData() {
         Application application = new Application();
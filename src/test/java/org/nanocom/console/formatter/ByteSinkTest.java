@@ -0,0 +1,107 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ByteSinkTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public ByteSinkTest() {
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteSink sink = new ByteSink(out);
+        sink.append("foo ").append("café 中文 😀").append('!').append('é').append("xbarx", 1, 4);
+        assertEquals("Nothing is written before the sink is flushed", 0, out.size());
+
+        sink.flush();
+        assertArrayEquals("foo café 中文 😀!ébar".getBytes(UTF_8.name()), out.toByteArray());
+    }
+
+    @Test
+    public void testBufferIsDrained() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("aé中");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteSink sink = new ByteSink(out, UTF_8, 16);
+        sink.append(text).write(new byte[] {'x', 'y'}).write(new byte[40]);
+        sink.flush();
+
+        byte[] expected = (text + "xy").getBytes(UTF_8.name());
+        assertEquals(expected.length + 40, out.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], out.toByteArray()[i]);
+        }
+    }
+
+    @Test
+    public void testLargeText() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("a\u00e9\u4e2d");
+        }
+
+        final int[] largest = new int[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] bytes, int offset, int length) {
+                largest[0] = Math.max(largest[0], length);
+                super.write(bytes, offset, length);
+            }
+        };
+        ByteSink sink = new ByteSink(out, UTF_8, 16);
+        sink.append(text);
+        sink.flush();
+
+        assertArrayEquals(text.toString().getBytes(UTF_8.name()), out.toByteArray());
+        assertTrue("Text larger than the buffer is encoded through it", largest[0] <= 16);
+    }
+
+    @Test
+    public void testCharsets() throws IOException {
+        assertTrue(ByteSink.isAsciiCompatible(UTF_8));
+        assertTrue(ByteSink.isAsciiCompatible(Charset.forName("ISO-8859-1")));
+        assertFalse(ByteSink.isAsciiCompatible(Charset.forName("UTF-16")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteSink sink = new ByteSink(out, Charset.forName("ISO-8859-1"));
+        sink.append("café 中");
+        sink.flush();
+        assertArrayEquals("Unmappable characters are replaced", "café ?".getBytes("ISO-8859-1"), out.toByteArray());
+
+        out = new ByteArrayOutputStream();
+        sink = new ByteSink(out, Charset.forName("UTF-16BE"));
+        sink.append("ab");
+        sink.flush();
+        assertArrayEquals(new byte[] {0, 'a', 0, 'b'}, out.toByteArray());
+    }
+
+    @Test
+    public void testFormatTo() throws IOException {
+        OutputFormatter formatter = new OutputFormatter(true);
+        String message = "<info>café</info> some <error>error</error> <fg=blue;options=bold>中文</> <custom>";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteSink sink = new ByteSink(out);
+        formatter.formatTo(message, sink);
+        sink.flush();
+
+        assertArrayEquals(formatter.format(message).getBytes(UTF_8.name()), out.toByteArray());
+    }
+}
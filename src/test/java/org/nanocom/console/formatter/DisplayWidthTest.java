@@ -0,0 +1,67 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class DisplayWidthTest {
+
+    public DisplayWidthTest() {
+    }
+
+    @Test
+    public void testCodePoint() {
+        assertEquals(1, DisplayWidth.of('a'));
+        assertEquals(1, DisplayWidth.of('à'));
+        assertEquals(2, DisplayWidth.of('中'));
+        assertEquals(2, DisplayWidth.of('Ａ'));
+        assertEquals(0, DisplayWidth.of('́'));
+        assertEquals(0, DisplayWidth.of('\n'));
+        assertEquals(2, DisplayWidth.of(0x1F600));
+    }
+
+    @Test
+    public void testText() {
+        assertEquals(0, DisplayWidth.of(""));
+        assertEquals(3, DisplayWidth.of("foo"));
+        assertEquals(3, DisplayWidth.of("\033[32mfoo\033[0m"));
+        assertEquals(6, DisplayWidth.of("中文ab"));
+        assertEquals(4, DisplayWidth.of("café"));
+        assertEquals(4, DisplayWidth.of("a😀b"));
+        assertEquals(14, DisplayWidth.of("<info>a</info>"));
+        assertEquals(2, DisplayWidth.of("xfoox", 1, 3));
+    }
+
+    @Test
+    public void testMessage() {
+        assertEquals(3, DisplayWidth.ofMessage("<info>foo</info>"));
+        assertEquals(7, DisplayWidth.ofMessage("<fg=red>foo</> <b>"));
+        assertEquals(6, DisplayWidth.ofMessage("a <> b"));
+        assertEquals(4, DisplayWidth.ofMessage("<error>中文</error>"));
+        assertEquals(3, DisplayWidth.ofMessage("\033[32mfoo\033[0m"));
+    }
+
+    @Test
+    public void testPad() {
+        assertEquals("foo  ", DisplayWidth.pad("foo", 5));
+        assertEquals("中文 ", DisplayWidth.pad("中文", 5));
+        assertEquals("foobar", DisplayWidth.pad("foobar", 5));
+        assertEquals("<info>foo</info>  ", DisplayWidth.padMessage("<info>foo</info>", 5));
+    }
+
+    @Test
+    public void testTruncate() {
+        assertEquals("foo", DisplayWidth.truncate("foo", 5));
+        assertEquals("fo", DisplayWidth.truncate("foo", 2));
+        assertEquals("中", DisplayWidth.truncate("中文", 3));
+        assertEquals("\033[32mfo", DisplayWidth.truncate("\033[32mfoo\033[0m", 2));
+        assertEquals("café", DisplayWidth.truncate("cafés", 4));
+        assertEquals("", DisplayWidth.truncate("中", 1));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ImmutableOutputFormatterStyleTest {
+
+    public ImmutableOutputFormatterStyleTest() {
+    }
+
+    @Test
+    public void testConstructor() {
+        ImmutableOutputFormatterStyle style = new ImmutableOutputFormatterStyle("green", "black", new String[] {"bold", "underscore"});
+        assertEquals("\033[32;40;1;4mfoo\033[0m", style.apply("foo"));
+        assertEquals("\033[32;40;1;4m", style.getStartSequence());
+        assertEquals("\033[0m", style.getEndSequence());
+
+        style = new ImmutableOutputFormatterStyle(null, "white");
+        assertEquals("\033[47mfoo\033[0m", style.apply("foo"));
+
+        assertEquals("\033[mfoo\033[0m", new ImmutableOutputFormatterStyle().apply("foo"));
+    }
+
+    @Test
+    public void testWithers() {
+        ImmutableOutputFormatterStyle style = new ImmutableOutputFormatterStyle();
+        ImmutableOutputFormatterStyle red = style.withForeground("red");
+
+        assertNotSame(style, red);
+        assertEquals("\033[mfoo\033[0m", style.apply("foo"));
+        assertEquals("\033[31mfoo\033[0m", red.apply("foo"));
+        assertEquals("\033[31;43mfoo\033[0m", red.withBackground("yellow").apply("foo"));
+        assertEquals("\033[43mfoo\033[0m", red.withBackground("yellow").withForeground(null).apply("foo"));
+        assertSame(red, red.withForeground("red"));
+    }
+
+    @Test
+    public void testOptions() {
+        ImmutableOutputFormatterStyle style = new ImmutableOutputFormatterStyle().withOptions(new String[] {"reverse", "conceal"});
+        assertEquals("\033[7;8mfoo\033[0m", style.apply("foo"));
+
+        style = style.withOption("bold");
+        assertEquals("\033[7;8;1mfoo\033[0m", style.apply("foo"));
+
+        style = style.withoutOption("reverse");
+        assertEquals("\033[8;1mfoo\033[0m", style.apply("foo"));
+
+        assertSame(style, style.withOption("bold"));
+
+        style = style.withOptions(new String[] {"bold"});
+        assertEquals("\033[1mfoo\033[0m", style.apply("foo"));
+    }
+
+    @Test
+    public void testEquals() {
+        ImmutableOutputFormatterStyle style = new ImmutableOutputFormatterStyle("blue", "white", new String[] {"bold"});
+
+        assertEquals(style, new ImmutableOutputFormatterStyle("blue").withBackground("white").withOption("bold"));
+        assertEquals(style.hashCode(), new ImmutableOutputFormatterStyle("blue", "white", new String[] {"bold"}).hashCode());
+        assertFalse(style.equals(new ImmutableOutputFormatterStyle("blue", "white")));
+        assertEquals(style, new OutputFormatterStyle("blue", "white", new String[] {"bold"}).toImmutable());
+    }
+
+    @Test
+    public void testTransitionSequence() {
+        ImmutableOutputFormatterStyle empty = ImmutableOutputFormatterStyle.EMPTY;
+        ImmutableOutputFormatterStyle info = new ImmutableOutputFormatterStyle("green");
+        ImmutableOutputFormatterStyle bold = new ImmutableOutputFormatterStyle("green", null, new String[] {"bold", "underscore"});
+
+        assertEquals("", empty.getTransitionSequence(empty));
+        assertEquals("\033[32m", info.getTransitionSequence(empty));
+        assertEquals("\033[0m", empty.getTransitionSequence(info));
+        assertEquals("", info.getTransitionSequence(new ImmutableOutputFormatterStyle("green")));
+        assertEquals("\033[1;4m", bold.getTransitionSequence(info));
+        assertEquals("\033[0;32m", info.getTransitionSequence(bold));
+        assertEquals("\033[24m", bold.withoutOption("underscore").getTransitionSequence(bold));
+        assertEquals("\033[39m", new ImmutableOutputFormatterStyle(null, "red").getTransitionSequence(info.withBackground("red")));
+        assertEquals("", bold.getTransitionSequence(new ImmutableOutputFormatterStyle("green", null, new String[] {"underscore", "bold"})));
+        assertEquals("\033[0;34m", new ImmutableOutputFormatterStyle("blue").getTransitionSequence(bold.withBackground("red")));
+    }
+
+    @Test
+    public void testExtendedColors() {
+        ImmutableOutputFormatterStyle style = new ImmutableOutputFormatterStyle("#ff8000", "208");
+        assertEquals("\033[38;2;255;128;0;48;5;208m", style.getStartSequence());
+        assertEquals("\033[38;5;42m", new ImmutableOutputFormatterStyle("42").getStartSequence());
+        assertEquals(new ImmutableOutputFormatterStyle("#FF0000"), new ImmutableOutputFormatterStyle("#ff0000"));
+        assertFalse(new ImmutableOutputFormatterStyle("1").equals(new ImmutableOutputFormatterStyle("red")));
+        assertEquals("\033[38;5;42m", new ImmutableOutputFormatterStyle("42").getTransitionSequence(new ImmutableOutputFormatterStyle("red")));
+    }
+
+    @Test
+    public void testColorDepth() {
+        ImmutableOutputFormatterStyle style = new ImmutableOutputFormatterStyle("#ff0000", "#0000ff", new String[] {"bold"});
+        assertSame(style, style.withColorDepth(ColorDepth.TRUE_COLOR));
+        assertEquals("\033[38;5;196;48;5;21;1m", style.withColorDepth(ColorDepth.INDEXED).getStartSequence());
+        assertEquals("\033[31;44;1m", style.withColorDepth(ColorDepth.BASIC).getStartSequence());
+        assertSame("The reduced style is kept", style.withColorDepth(ColorDepth.BASIC), style.withColorDepth(ColorDepth.BASIC));
+
+        assertEquals("\033[38;5;244m", new ImmutableOutputFormatterStyle("#808080").withColorDepth(ColorDepth.INDEXED).getStartSequence());
+        assertEquals("\033[33m", new ImmutableOutputFormatterStyle("208").withColorDepth(ColorDepth.BASIC).getStartSequence());
+
+        ImmutableOutputFormatterStyle named = new ImmutableOutputFormatterStyle("green");
+        assertSame(named, named.withColorDepth(ColorDepth.BASIC));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidExtendedColor() {
+        new ImmutableOutputFormatterStyle(null, "256");
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidColor() {
+        new ImmutableOutputFormatterStyle("undefined-color");
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testSetterNotSupported() {
+        new ImmutableOutputFormatterStyle().setForeground("red");
+    }
+}
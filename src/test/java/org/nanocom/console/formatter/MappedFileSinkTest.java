@@ -0,0 +1,172 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MappedFileSinkTest {
+
+    public MappedFileSinkTest() {
+    }
+
+    @Test
+    public void testCloseAfterFailure() throws IOException {
+        File file = File.createTempFile("console", ".txt");
+        file.deleteOnExit();
+
+        FailingChannel channel = new FailingChannel(new RandomAccessFile(file, "rw").getChannel(), 1);
+        MappedFileSink sink = new MappedFileSink(channel, 0, Charset.forName("UTF-8"), 16);
+        sink.append("0123456789");
+        try {
+            sink.append("0123456789");
+            fail("The next window can not be mapped");
+        } catch (IOException e) {
+            assertEquals("unable to map", e.getMessage());
+        }
+
+        assertEquals(16, sink.getLength());
+        try {
+            sink.append("foo");
+            fail("Bytes are not appended to the previous window");
+        } catch (IOException e) {
+            assertEquals("The file could not be mapped.", e.getMessage());
+        }
+
+        sink.close();
+        assertFalse(channel.isOpen());
+        assertEquals("The file is truncated to the bytes appended", 16, file.length());
+
+        byte[] content = new byte[16];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            assertEquals(16, in.read(content));
+        } finally {
+            in.close();
+        }
+        assertEquals("0123456789012345", new String(content, "UTF-8"));
+    }
+
+    /**
+     * Channel failing to map more than a number of regions.
+     */
+    private static class FailingChannel extends FileChannel {
+
+        private final FileChannel channel;
+        private int maps;
+
+        FailingChannel(FileChannel channel, int maps) {
+            this.channel = channel;
+            this.maps = maps;
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            if (maps-- <= 0) {
+                throw new IOException("unable to map");
+            }
+
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+
+            return this;
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+    }
+}
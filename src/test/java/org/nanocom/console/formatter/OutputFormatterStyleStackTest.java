@@ -71,4 +71,33 @@ public class OutputFormatterStyleStackTest {
         stack.push(new OutputFormatterStyle("white", "black"));
         stack.pop(new OutputFormatterStyle("yellow", "blue"));
     }
+
+    @Test
+    public void testPopDeeplyNested() {
+        OutputFormatterStyleStack stack = new OutputFormatterStyleStack();
+        OutputFormatterStyle s1 = new OutputFormatterStyle("white", "black");
+        stack.push(s1);
+        OutputFormatterStyle s2 = new OutputFormatterStyle("yellow", "blue");
+        stack.push(s2);
+
+        for (int i = 0; i < 100; i++) {
+            stack.push(new OutputFormatterStyle("green", "red"));
+        }
+
+        assertEquals(s2, stack.pop(new OutputFormatterStyle("yellow", "blue")));
+        assertEquals(s1, stack.getCurrent());
+        assertEquals(s1, stack.pop());
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void testPopMatchesImmutableStyles() {
+        OutputFormatterStyleStack stack = new OutputFormatterStyleStack();
+        OutputFormatterStyle s1 = new OutputFormatterStyle("white", "black");
+        stack.push(s1);
+        stack.push(new OutputFormatterStyle("yellow", "blue"));
+
+        assertEquals(s1, stack.pop(new ImmutableOutputFormatterStyle("white", "black")));
+        assertTrue(stack.isEmpty());
+    }
 }
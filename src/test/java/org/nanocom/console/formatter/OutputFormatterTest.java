@@ -7,6 +7,10 @@
 
 package org.nanocom.console.formatter;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -99,6 +103,38 @@ public class OutputFormatterTest {
         assertEquals("\033[34;41msome text\033[0m", formatter.format("<fg=blue;bg=red>some text</fg=blue;bg=red>"));
     }
 
+    @Test
+    public void testInlineStyleReused() {
+        OutputFormatter formatter = new OutputFormatter(true);
+
+        assertEquals("\033[31;1;4msome text\033[0m", formatter.format("<fg=red;options=bold;options=underscore>some text</>"));
+        assertEquals("\033[31;1;4msome text\033[0m", new OutputFormatter(true).format("<FG=red;options=bold;options=underscore>some text</fg=red;options=bold;options=underscore>"));
+        assertEquals("<foo;bar>some text", formatter.format("<foo;bar>some text</>"));
+        assertEquals("<foo;bar>some text", formatter.format("<foo;bar>some text</>"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidInlineStyle() {
+        OutputFormatter formatter = new OutputFormatter(true);
+
+        try {
+            formatter.format("<fg=undefined-color>some text</>");
+        } catch (IllegalArgumentException e) {
+            // Invalid styles are not remembered
+        }
+
+        formatter.format("<fg=undefined-color>some text</>");
+    }
+
+    @Test
+    public void testExtendedColors() {
+        OutputFormatter formatter = new OutputFormatter(true);
+        assertEquals("\033[38;2;255;0;0;48;5;21msome text\033[0m", formatter.format("<fg=#FF0000;bg=21>some text</>"));
+
+        formatter.setColorDepth(ColorDepth.BASIC);
+        assertEquals("\033[31;44msome text\033[0m", formatter.format("<fg=#FF0000;bg=21>some text</>"));
+    }
+
     @Test
     public void testNotDecoratedFormatter() {
         OutputFormatter formatter = new OutputFormatter(false);
@@ -146,4 +182,300 @@ public class OutputFormatterTest {
         assertEquals("\033[32m\nsome text\n\033[0m", formatter.format("<info>\nsome text\n</info>"));
         assertEquals("\033[32m\nsome text\nmore text\n\033[0m", formatter.format("<info>\nsome text\nmore text\n</info>"));
     }
+
+    @Test
+    public void testMessageWithoutTags() {
+        OutputFormatter formatter = new OutputFormatter(true);
+
+        String message = "some text without any tag";
+        assertSame(message, formatter.format(message));
+    }
+
+    @Test
+    public void testNotATag() {
+        OutputFormatter formatter = new OutputFormatter(true);
+
+        assertEquals("a < b", formatter.format("a < b"));
+        assertEquals("<b>bold</b>", formatter.format("<b>bold</b>"));
+        assertEquals("<bar>foo</bar>", formatter.format("<bar>foo</bar>"));
+        assertEquals("\033[32mfoo \033[0m<1> bar", formatter.format("<info>foo <1> bar</info>"));
+        assertEquals("<<\033[32mfoo\033[0m", formatter.format("<<<info>foo</info>"));
+    }
+
+    @Test
+    public void testFormatTo() throws IOException {
+        OutputFormatter formatter = new OutputFormatter(true);
+
+        StringBuilder builder = new StringBuilder("> ");
+        formatter.formatTo("<error>some <info>some info</info> error</error>", builder);
+        assertEquals("> \033[37;41msome \033[0m\033[32msome info\033[0m\033[37;41m error\033[0m", builder.toString());
+
+        CharBuffer buffer = CharBuffer.allocate(64);
+        formatter.formatTo(new StringBuilder("<info>some info</info>"), buffer);
+        buffer.flip();
+        assertEquals("\033[32msome info\033[0m", buffer.toString());
+    }
+
+    @Test
+    public void testCompile() {
+        OutputFormatter formatter = new OutputFormatter(true);
+        OutputFormatterTemplate template = formatter.compile("<info>%s</info> processed in <comment>%d ms</comment>");
+
+        assertEquals(
+            formatter.format(String.format("<info>%s</info> processed in <comment>%d ms</comment>", "foo", 5)),
+            template.render("foo", 5)
+        );
+        assertEquals("\033[32m<error>\033[0m\033[m processed in \033[0m\033[33m5 ms\033[0m", template.render("<error>", 5));
+        assertEquals("\033[m processed in \033[0m\033[33m5 ms\033[0m", template.render("", 5));
+
+        formatter.setDecorated(false);
+        assertEquals("foo processed in 5 ms", template.render("foo", 5));
+        assertFalse(template.hasLineBreak());
+
+        formatter.setDecorated(true);
+        template = formatter.compile("<error>%2$s %1$5.1f%% %2$s</error>%n");
+        assertEquals("\033[37;41mbar   1.5% bar\033[0m\033[m" + String.format("%n") + "\033[0m", template.render(1.5, "bar"));
+        assertTrue(template.hasLineBreak());
+        assertTrue(formatter.compile("<info>foo\n</info>%s").hasLineBreak());
+        assertEquals("<b>1F</b>", formatter.compile("<b>%X</b>").render(31));
+    }
+
+    @Test(expected=java.util.MissingFormatArgumentException.class)
+    public void testRenderMissingArgument() {
+        new OutputFormatter(true).compile("<info>%s %s</info>").render("foo");
+    }
+
+    @Test
+    public void testCache() {
+        OutputFormatter formatter = new OutputFormatter(true);
+        assertEquals(0, formatter.getCacheSize());
+
+        formatter.setCacheSize(2);
+        assertEquals(2, formatter.getCacheSize());
+
+        String formatted = formatter.format("<info>foo</info>");
+        assertEquals("\033[32mfoo\033[0m", formatted);
+        assertSame(formatted, formatter.format("<info>foo</info>"));
+        assertEquals(1, formatter.getCacheHits());
+        assertEquals(1, formatter.getCacheMisses());
+
+        formatter.format("<info>bar</info>");
+        formatter.format("<info>foo</info>");
+        formatter.format("<info>baz</info>");
+        assertEquals(2, formatter.getCacheHits());
+        formatter.format("<info>bar</info>");
+        assertEquals("the least recently used message is evicted", 2, formatter.getCacheHits());
+        assertEquals(4, formatter.getCacheMisses());
+
+        formatter.setDecorated(false);
+        assertEquals("foo", formatter.format("<info>foo</info>"));
+        formatter.setDecorated(true);
+        formatter.setStyle("info", new OutputFormatterStyle("blue"));
+        assertEquals("\033[34mfoo\033[0m", formatter.format("<info>foo</info>"));
+        assertEquals(2, formatter.getCacheHits());
+    }
+
+    @Test
+    public void testUnclosedStylesDoNotLeak() {
+        OutputFormatter formatter = new OutputFormatter(true);
+        formatter.setCacheSize(8);
+
+        assertEquals("\033[32mfoo\033[0m", formatter.format("<info>foo"));
+        assertEquals("bar", formatter.format("bar"));
+        assertEquals("bar\033[33mbaz\033[0m", formatter.format("bar<comment>baz</comment></info>"));
+        assertSame(formatter.format("<info>foo"), formatter.format("<info>foo"));
+    }
+
+    @Test
+    public void testConcurrentClearCache() throws InterruptedException {
+        final OutputFormatter formatter = new OutputFormatter(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        int generation = formatter.getGeneration();
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 10000; i++) {
+                        formatter.clearCache();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("No change of generation is lost", generation + threads.length * 10000, formatter.getGeneration());
+    }
+
+    @Test
+    public void testConcurrentFormat() throws InterruptedException {
+        final OutputFormatter formatter = new OutputFormatter(true);
+        final String[] messages = {
+            "<error>error<info>info<comment>comment</info>error</error>",
+            "<info>some <fg=blue;options=bold>inline</> info",
+            "<question>foo <error>bar</error> baz</question>",
+            "no tag at all <b> here"
+        };
+        final String[] expected = new String[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            expected[i] = new OutputFormatter(true).format(messages[i]);
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 20000; i++) {
+                            int message = (i + offset) % messages.length;
+                            if (!expected[message].equals(formatter.format(messages[message]))) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, failures.get());
+    }
+
+    @Test
+    public void testCompact() {
+        OutputFormatter formatter = new OutputFormatter(true);
+        formatter.setCompact(true);
+        assertTrue(formatter.isCompact());
+
+        assertEquals("\033[32msome info\033[0m", formatter.format("<info>some info</info>"));
+        assertEquals(
+            "\033[37;41msome \033[30;46msome question\033[37;41m error\033[0m",
+            formatter.format("<error>some <question>some question</question> error</error>")
+        );
+        assertEquals("\033[32msome info\033[0m", formatter.format("<info>some </info><info>info</info>"));
+        assertEquals("\033[32msome \033[1minfo\033[0m", formatter.format("<info>some <fg=green;options=bold>info</></>"));
+        assertEquals("a \033[32mb\033[0m<1> c", formatter.format("a <info>b<1> c"));
+
+        formatter.setDecorated(false);
+        assertEquals("some info", formatter.format("<info>some </info><info>info</info>"));
+    }
+
+    @Test
+    public void testStrip() {
+        OutputFormatter formatter = new OutputFormatter(true);
+
+        String message = "some text without any tag";
+        assertSame(message, formatter.strip(message));
+        assertEquals("some error", formatter.strip("<error>some error</error>"));
+        assertEquals("some info error", formatter.strip("<error>some <info>info</> error</error>"));
+        assertEquals("some text", formatter.strip("<fg=blue;BG=red>some text</>"));
+        assertEquals("<bar>foo</bar> <> x<1>", formatter.strip("<bar>foo</bar> <> <info>x</info><1>"));
+        assertEquals("foo bar", formatter.strip("<info>foo</comment> bar"));
+    }
+
+    @Test
+    public void testFormatToPlain() throws IOException {
+        OutputFormatter formatter = new OutputFormatter(true);
+        String[] messages = {
+            "foo", "<info>foo</info> bar", "<foo>bar</foo>", "<error>a <comment>b</comment> c</error>",
+            "<fg=red;bg=blue>x</> y", "<info>unclosed", "a < b", "<>text</>"
+        };
+
+        for (String message : messages) {
+            StringBuilder styled = new StringBuilder();
+            StringBuilder plain = new StringBuilder();
+            formatter.formatTo(message, styled, plain);
+            assertEquals(formatter.format(message), styled.toString());
+            assertEquals(formatter.strip(message), plain.toString());
+        }
+
+        StringBuilder styled = new StringBuilder();
+        StringBuilder plain = new StringBuilder();
+        OutputFormatterTemplate template = formatter.compile("<info>%s</info> in %d ms");
+        template.renderTo(styled, plain, "<b>", 5);
+        assertEquals(template.render("<b>", 5), styled.toString());
+        assertEquals("<b> in 5 ms", plain.toString());
+    }
+
+    @Test
+    public void testBegin() throws IOException {
+        OutputFormatter formatter = new OutputFormatter(true);
+
+        StringBuilder out = new StringBuilder();
+        OutputFormatterStream stream = formatter.begin(out);
+        stream.write("<info>some ").write("info</info> <comm");
+        assertEquals("A cut tag is kept for the next chunk", "\033[32msome \033[0m\033[32minfo\033[0m\033[m \033[0m", out.toString());
+        stream.write("ent>some comment</").write("comment> <1").write("> <inf");
+        stream.end();
+        assertEquals(
+            "\033[32msome \033[0m\033[32minfo\033[0m\033[m \033[0m\033[33msome comment\033[0m\033[m \033[0m<1> <inf",
+            out.toString()
+        );
+
+        formatter.setCompact(true);
+        out = new StringBuilder();
+        stream = formatter.begin(out);
+        stream.write("<info>some").write(" info</").write("info>");
+        stream.end();
+        stream.end();
+        assertEquals(formatter.format("<info>some info</info>"), out.toString());
+
+        formatter.setDecorated(false);
+        out = new StringBuilder();
+        formatter.begin(out).write("<er").write("ror>some error</error>").end();
+        assertEquals("some error", out.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterEnd() throws IOException {
+        OutputFormatterStream stream = new OutputFormatter(true).begin(new StringBuilder());
+        stream.end();
+        stream.write("foo");
+    }
+
+    @Test
+    public void testNotDecoratedFormatterStrips() {
+        OutputFormatter formatter = new OutputFormatter(false);
+        formatter.setStyle("test", new OutputFormatterStyle("blue"));
+
+        assertEquals("a <b> c", formatter.format("<test>a</test> <b> <fg=red>c</>"));
+        assertEquals(formatter.strip("<test>a</test> <b> <fg=red>c</>"), formatter.format("<test>a</test> <b> <fg=red>c</>"));
+    }
+
+    @Test
+    public void testEscape() throws IOException {
+        String text = "some text without any tag";
+        assertSame(text, OutputFormatter.escape(text));
+        assertEquals("\\<info>foo\\</info>", OutputFormatter.escape("<info>foo</info>"));
+        assertEquals("a \\\\<b", OutputFormatter.escape("a \\<b"));
+        assertEquals("<\\<", OutputFormatter.escape("<<"));
+
+        StringBuilder builder = new StringBuilder("> ");
+        OutputFormatter.escapeTo("<info>foo</info>", 6, 16, builder);
+        assertEquals("> foo\\</info>", builder.toString());
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.formatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class WordWrapperTest {
+
+    public WordWrapperTest() {
+    }
+
+    @Test
+    public void testWrap() {
+        LineWrapper wrapper = new LineWrapper(10);
+        wrapper.write("The quick brown fox jumps", true);
+        assertEquals(Arrays.asList("The quick", "brown fox", "jumps"), wrapper.lines);
+
+        wrapper = new LineWrapper(10);
+        wrapper.write("  indented text here", true);
+        assertEquals(Arrays.asList("  indented", "text here"), wrapper.lines);
+
+        wrapper = new LineWrapper(10);
+        wrapper.write("foo\nbar baz", true);
+        assertEquals(Arrays.asList("foo", "bar baz"), wrapper.lines);
+
+        wrapper = new LineWrapper(4);
+        wrapper.write("abcdefghij", true);
+        assertEquals(Arrays.asList("abcd", "efgh", "ij"), wrapper.lines);
+
+        wrapper = new LineWrapper(4);
+        wrapper.write("中文中文", true);
+        assertEquals(Arrays.asList("中文", "中文"), wrapper.lines);
+    }
+
+    @Test
+    public void testStyles() {
+        LineWrapper wrapper = new LineWrapper(5);
+        wrapper.write("<info>aaa bbb</info>", true);
+        assertEquals(Arrays.asList("<info>aaa", "<info>bbb</info>"), wrapper.lines);
+
+        wrapper = new LineWrapper(5);
+        wrapper.write("aaa <info>bbb</info>", true);
+        assertEquals(Arrays.asList("aaa", "<info>bbb</info>"), wrapper.lines);
+
+        wrapper = new LineWrapper(10);
+        wrapper.write("<foo>aaa bbb</foo>", true);
+        assertEquals(Arrays.asList("<foo>aaa", "bbb</foo>"), wrapper.lines);
+
+        wrapper = new LineWrapper(3);
+        wrapper.write("\033[32mabc\033[0m def", true);
+        assertEquals(Arrays.asList("\033[32mabc\033[0m", "def"), wrapper.lines);
+    }
+
+    @Test
+    public void testMessages() {
+        LineWrapper wrapper = new LineWrapper(10);
+        wrapper.write("foo ", false);
+        assertEquals(4, wrapper.getColumn());
+        wrapper.write("bar baz qux", true);
+        assertEquals(Arrays.asList("foo ", "bar", "baz qux"), wrapper.lines);
+
+        wrapper = new LineWrapper(10);
+        wrapper.writeRaw("<info>foo</info>", true);
+        assertEquals(Arrays.asList("<info>foo<", "/info>"), wrapper.lines);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWidth() {
+        new LineWrapper(0);
+    }
+
+    private static class LineWrapper extends WordWrapper {
+
+        private final List<String> lines = new ArrayList<String>();
+
+        public LineWrapper(int width) {
+            super(new OutputFormatter(), width);
+        }
+
+        @Override
+        protected void writeLine(String line, boolean newline) {
+            lines.add(line);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.nanocom.console.exception.OutputException;
+
+public class AsyncOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public AsyncOutputTest() {
+    }
+
+    @Test
+    public void testWrite() {
+        InMemoryOutput memory = new InMemoryOutput();
+        memory.setDecorated(true);
+        AsyncOutput output = new AsyncOutput(memory, 4, AsyncOutput.WaitStrategy.BLOCKING);
+
+        output.writeln("<info>foo</info>");
+        output.write("<info>bar</info>", false, OutputInterface.OutputType.PLAIN);
+        output.printf("%s-%d", "baz", 1);
+        output.flush();
+        assertEquals("\033[32mfoo\033[0m" + EOL + "barbaz-1", memory.getBuffer().toString());
+
+        for (int i = 0; i < 100; i++) {
+            output.write(String.valueOf(i % 10));
+        }
+        output.close();
+        assertTrue(memory.getBuffer().toString().endsWith("0123456789"));
+        assertEquals(0, output.getDroppedCount());
+    }
+
+    @Test
+    public void testConcurrentWrite() throws InterruptedException {
+        final InMemoryOutput memory = new InMemoryOutput();
+        final AsyncOutput output = new AsyncOutput(memory, 8, AsyncOutput.WaitStrategy.YIELD);
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        output.write("x");
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        output.flush();
+
+        assertEquals(2000, memory.getBuffer().length());
+    }
+
+    @Test
+    public void testDropping() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        InMemoryOutput memory = new InMemoryOutput() {
+            @Override
+            protected void doWrite(String message, boolean newline) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.doWrite(message, newline);
+            }
+        };
+        AsyncOutput output = new AsyncOutput(memory, 1, AsyncOutput.WaitStrategy.DROPPING);
+
+        output.write("a");
+        blocked.await();
+        output.write("b");
+        output.write("c");
+        output.write("d");
+        assertEquals(1, output.getDroppedCount());
+
+        release.countDown();
+        output.close();
+        assertEquals("abc", memory.getBuffer().toString());
+    }
+
+    @Test
+    public void testWriteAtLevel() {
+        InMemoryOutput memory = new InMemoryOutput(OutputInterface.VerbosityLevel.QUIET);
+        AsyncOutput output = new AsyncOutput(memory);
+
+        output.writeln("foo", OutputInterface.VerbosityLevel.QUIET);
+        output.writeln("bar");
+        output.printf(OutputInterface.VerbosityLevel.QUIET, "%s", "baz");
+        output.flush();
+        assertEquals("foo" + EOL + "baz", memory.getBuffer().toString());
+    }
+
+    @Test
+    public void testFailure() {
+        AsyncOutput output = new AsyncOutput(new InMemoryOutput() {
+            @Override
+            protected void doWrite(String message, boolean newline) {
+                throw new IllegalStateException("broken");
+            }
+        });
+
+        output.write("foo");
+        try {
+            output.flush();
+            fail("flush() reports errors of the writer thread");
+        } catch (OutputException e) {
+            assertEquals("broken", e.getCause().getMessage());
+        }
+
+        output.close();
+    }
+
+    @Test
+    public void testConcurrentClose() throws InterruptedException {
+        final InMemoryOutput memory = new InMemoryOutput();
+        final AsyncOutput output = new AsyncOutput(memory, 8, AsyncOutput.WaitStrategy.YIELD);
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            output.write("x");
+                            accepted.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        // Closed
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        Thread.sleep(20);
+        output.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("Messages accepted are written, the others are refused", accepted.get(), memory.getBuffer().length());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterClose() {
+        AsyncOutput output = new AsyncOutput(new NullOutput());
+        output.close();
+        output.write("foo");
+    }
+}
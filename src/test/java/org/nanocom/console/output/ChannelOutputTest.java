@@ -0,0 +1,134 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.nanocom.console.formatter.ChannelSink;
+import org.nanocom.console.output.OutputInterface.VerbosityLevel;
+
+public class ChannelOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public ChannelOutputTest() {
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelOutput output = new ChannelOutput(Channels.newChannel(bytes), VerbosityLevel.NORMAL, true);
+        output.setCharset(Charset.forName("UTF-8"));
+
+        output.write("foo ");
+        output.writeln("<info>café</info>");
+        output.write("<info>bar</info>", false, OutputInterface.OutputType.PLAIN);
+        output.printf("%s-%d", "baz", 1);
+        assertEquals("Nothing is written before the output is flushed", 0, bytes.size());
+
+        output.flush();
+        assertEquals("foo \033[32mcafé\033[0m" + EOL + "barbaz-1", bytes.toString("UTF-8"));
+    }
+
+    @Test
+    public void testGatheringWrite() throws IOException {
+        RecordingChannel channel = new RecordingChannel();
+        ChannelOutput output = new ChannelOutput(channel);
+
+        char[] large = new char[20000];
+        Arrays.fill(large, 'x');
+        output.write("foo");
+        output.write(new String(large), false, OutputInterface.OutputType.RAW);
+        output.flush();
+        assertEquals("A large message is encoded through the buffer", "foo" + new String(large), channel.bytes.toString());
+        assertEquals(0, channel.gatheringWrites);
+
+        byte[] bytes = new byte[20000];
+        Arrays.fill(bytes, (byte) 'y');
+        ChannelSink sink = new ChannelSink(channel, output.getCharset());
+        sink.append("bar").write(bytes).flush();
+        assertTrue(channel.bytes.toString().endsWith("bar" + new String(bytes, "US-ASCII")));
+        assertTrue("Large bytes are written with the buffer", channel.gatheringWrites > 0);
+    }
+
+    @Test
+    public void testFileChannel() throws IOException {
+        File file = File.createTempFile("console", ".txt");
+        file.deleteOnExit();
+
+        ChannelOutput output = new ChannelOutput(new FileOutputStream(file).getChannel());
+        for (int i = 0; i < 1000; i++) {
+            output.writeln("line " + i);
+        }
+        output.close();
+        assertFalse(output.getChannel().isOpen());
+
+        byte[] content = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            assertEquals(content.length, in.read(content));
+        } finally {
+            in.close();
+        }
+
+        String text = new String(content, output.getCharset().name());
+        assertTrue(text.startsWith("line 0" + EOL + "line 1" + EOL));
+        assertTrue(text.endsWith("line 999" + EOL));
+    }
+
+    private static class RecordingChannel implements GatheringByteChannel {
+
+        final StringBuilder bytes = new StringBuilder();
+        int gatheringWrites = 0;
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            gatheringWrites++;
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += write(srcs[i]);
+            }
+
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int written = src.remaining();
+            while (src.hasRemaining()) {
+                bytes.append((char) src.get());
+            }
+
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ConcurrentOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public ConcurrentOutputTest() {
+    }
+
+    @Test
+    public void testWrite() {
+        InMemoryOutput memory = new InMemoryOutput();
+        memory.setDecorated(true);
+        ConcurrentOutput output = new ConcurrentOutput(memory);
+
+        output.write("<info>foo</info>");
+        output.write("bar");
+        assertEquals("A line is not written before it ends", "", memory.getBuffer().toString());
+
+        output.writeln("baz");
+        assertEquals("\033[32mfoo\033[0mbarbaz" + EOL, memory.getBuffer().toString());
+
+        output.printf("%s-%d", "qux", 1);
+        output.write("a\nb", false, OutputInterface.OutputType.RAW);
+        assertEquals("\033[32mfoo\033[0mbarbaz" + EOL + "qux-1a\n", memory.getBuffer().toString());
+
+        output.flush();
+        assertEquals("\033[32mfoo\033[0mbarbaz" + EOL + "qux-1a\nb", memory.getBuffer().toString());
+    }
+
+    @Test
+    public void testWriteAtLevel() {
+        InMemoryOutput memory = new InMemoryOutput(OutputInterface.VerbosityLevel.QUIET);
+        ConcurrentOutput output = new ConcurrentOutput(memory);
+
+        output.writeln("foo", OutputInterface.VerbosityLevel.QUIET);
+        output.writeln("bar");
+        assertEquals("foo" + EOL, memory.getBuffer().toString());
+    }
+
+    @Test
+    public void testConcurrentWrite() throws InterruptedException {
+        InMemoryOutput memory = new InMemoryOutput();
+        final ConcurrentOutput output = new ConcurrentOutput(memory);
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            final String name = String.valueOf(i);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        output.write(name);
+                        output.write(name);
+                        output.writeln(name);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        String[] lines = memory.getBuffer().toString().split(EOL);
+        assertEquals(2000, lines.length);
+        for (String line : lines) {
+            assertTrue("Lines are not mixed: " + line, line.matches("(\\d)\\1\\1"));
+        }
+    }
+}
@@ -20,4 +20,11 @@ public class ConsoleOutputTest {
         OutputInterface output = new ConsoleOutput(Output.VerbosityLevel.QUIET, true);
         Assert.assertEquals("constructor takes the verbosity as its first argument", Output.VerbosityLevel.QUIET, output.getVerbosity());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCharset() {
+        ConsoleOutput output = new ConsoleOutput();
+        Assert.assertNotNull("Messages are encoded with the charset of the standard output", output.getCharset());
+        Assert.assertNotNull(((StreamOutput) output.getErrorOutput()).getCharset());
+    }
+}
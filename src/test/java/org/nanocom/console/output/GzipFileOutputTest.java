@@ -0,0 +1,85 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.nanocom.console.output.OutputInterface.VerbosityLevel;
+
+public class GzipFileOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public GzipFileOutputTest() {
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        File file = File.createTempFile("console", ".txt.gz");
+        file.deleteOnExit();
+
+        GzipFileOutput output = new GzipFileOutput(file, Deflater.BEST_SPEED, 64, VerbosityLevel.NORMAL, true, null);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            output.writeln("<info>line " + i + "</info>");
+            expected.append("\033[32mline ").append(i).append("\033[0m").append(EOL);
+        }
+
+        char[] large = new char[500];
+        Arrays.fill(large, 'x');
+        output.write(new String(large), false, OutputInterface.OutputType.RAW);
+        output.printf("%s-%d", "baz", 1);
+        expected.append(large).append("baz-1");
+
+        output.flush();
+        output.close();
+        output.close();
+        assertEquals(expected.toString(), read(file, output.getCharset().name()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterClose() throws IOException {
+        File file = File.createTempFile("console", ".txt.gz");
+        file.deleteOnExit();
+
+        GzipFileOutput output = new GzipFileOutput(file);
+        output.close();
+        output.write("foo");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() throws IOException {
+        File file = File.createTempFile("console", ".txt.gz");
+        file.deleteOnExit();
+
+        new GzipFileOutput(file, 10, VerbosityLevel.NORMAL);
+    }
+
+    private static String read(File file, String charset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+
+        return bytes.toString(charset);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.nanocom.console.output.OutputInterface.VerbosityLevel;
+
+public class MappedFileOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public MappedFileOutputTest() {
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        File file = File.createTempFile("console", ".txt");
+        file.deleteOnExit();
+
+        MappedFileOutput output = new MappedFileOutput(file, 64, VerbosityLevel.NORMAL, true, null);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            output.writeln("<info>line " + i + "</info>");
+            expected.append("\033[32mline ").append(i).append("\033[0m").append(EOL);
+        }
+
+        char[] large = new char[200];
+        Arrays.fill(large, 'x');
+        output.write(new String(large), false, OutputInterface.OutputType.RAW);
+        output.printf("%s-%d", "baz", 1);
+        expected.append(large).append("baz-1");
+
+        byte[] bytes = expected.toString().getBytes(output.getCharset().name());
+        assertEquals(bytes.length, output.getLength());
+
+        output.close();
+        output.close();
+        assertEquals("The file is truncated to the messages written", bytes.length, file.length());
+        assertEquals(expected.toString(), read(file, output.getCharset().name()));
+    }
+
+    @Test
+    public void testQuiet() throws IOException {
+        File file = File.createTempFile("console", ".txt");
+        file.deleteOnExit();
+
+        MappedFileOutput output = new MappedFileOutput(file, VerbosityLevel.QUIET);
+        output.writeln("foo");
+        output.close();
+        assertEquals(0, file.length());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterClose() throws IOException {
+        File file = File.createTempFile("console", ".txt");
+        file.deleteOnExit();
+
+        MappedFileOutput output = new MappedFileOutput(file, 1024 * 1024, VerbosityLevel.NORMAL, false, null);
+        output.writeln("hello");
+        output.close();
+        assertEquals(("hello" + EOL).length(), output.getLength());
+        output.writeln("hello");
+    }
+
+    private static String read(File file, String charset) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            assertEquals(content.length, in.read(content));
+        } finally {
+            in.close();
+        }
+
+        return new String(content, charset);
+    }
+}
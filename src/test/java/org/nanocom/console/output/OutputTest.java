@@ -59,6 +59,11 @@ public class OutputTest {
         output.writeln("<info>foo</info>", OutputType.PLAIN);
         assertEquals("writeln() strips decoration tags if OUTPUT_PLAIN is specified", "foo\n", output.output);
 
+        output = new TestOutput();
+        output.setDecorated(true);
+        output.writeln("<info>foo</info> <bar>", OutputType.PLAIN);
+        assertEquals("writeln() strips decoration tags of a decorated output if OUTPUT_PLAIN is specified", "foo <bar>\n", output.output);
+
         output = new TestOutput();
         output.setDecorated(false);
         output.writeln("<info>foo</info>");
@@ -79,6 +84,112 @@ public class OutputTest {
         assertEquals("writeln() do nothing when a style does not exist", "<bar>foo</bar>\n", output.output);
     }
 
+    @Test
+    public void testPrintf() {
+        TestOutput output = new TestOutput(VerbosityLevel.QUIET);
+        output.printf("<info>%s</info>", "foo");
+        assertEquals("printf() outputs nothing if verbosity is set to VERBOSITY_QUIET", "", output.output);
+
+        output = new TestOutput();
+        output.printf("<info>%s</info> processed in %d ms", "foo", 5);
+        assertEquals("printf() strips decoration tags if decoration is set to false", "foo processed in 5 ms", output.output);
+
+        output = new TestOutput();
+        output.setDecorated(true);
+        output.printf("<info>%s</info>", "<comment>foo</comment>");
+        assertEquals("printf() does not format the arguments", "\033[32m<comment>foo</comment>\033[0m", output.output);
+
+        output.clear();
+        output.getFormatter().setStyle("info", new OutputFormatterStyle("yellow"));
+        output.setFormatter(output.getFormatter());
+        output.printf("<info>%s</info>", "foo");
+        assertEquals("setFormatter() discards the compiled templates", "\033[33mfoo\033[0m", output.output);
+
+        output.clear();
+        output.getFormatter().setStyle("info", new OutputFormatterStyle("red"));
+        output.printf("<info>%s</info>", "foo");
+        assertEquals("Setting a style discards the compiled templates", "\033[31mfoo\033[0m", output.output);
+
+        output.clear();
+        output.setDecorated(false);
+        output.printf("<info>%s</info>", "foo");
+        assertEquals("Changing the decorated flag discards the compiled templates", "foo", output.output);
+    }
+
+    @Test
+    public void testWriteAtLevel() {
+        TestOutput output = new TestOutput(VerbosityLevel.VERBOSE);
+        output.writeln("foo", VerbosityLevel.VERBOSE);
+        output.writeln("bar", VerbosityLevel.VERY_VERBOSE);
+        output.printf(VerbosityLevel.DEBUG, "%s", "baz");
+        assertEquals("writeln() outputs the messages the verbosity includes", "foo\n", output.output);
+
+        output = new TestOutput(VerbosityLevel.QUIET);
+        output.writeln("foo", VerbosityLevel.QUIET);
+        assertEquals("writeln() outputs quiet messages if verbosity is set to VERBOSITY_QUIET", "foo\n", output.output);
+
+        output = new TestOutput();
+        output.writeln(new FailingSupplier(), VerbosityLevel.VERBOSE);
+        assertEquals("writeln() does not build the messages the verbosity excludes", "", output.output);
+
+        output.writeln(new OutputInterface.MessageSupplier() {
+            @Override
+            public String get() {
+                return "<info>foo</info>";
+            }
+        }, VerbosityLevel.NORMAL);
+        assertEquals("writeln() builds the messages the verbosity includes", "foo\n", output.output);
+
+        NullOutput nullOutput = new NullOutput();
+        nullOutput.setVerbosity(VerbosityLevel.DEBUG);
+        nullOutput.write(new FailingSupplier(), false, OutputType.NORMAL, VerbosityLevel.NORMAL);
+        assertTrue(VerbosityLevel.DEBUG.includes(VerbosityLevel.VERBOSE));
+        assertFalse(VerbosityLevel.NORMAL.includes(VerbosityLevel.VERBOSE));
+    }
+
+    @Test
+    public void testBegin() {
+        TestOutput output = new TestOutput(VerbosityLevel.NORMAL, true);
+        output.begin();
+        output.write("<info>fo");
+        output.write("o</in");
+        assertEquals("\033[32mfo\033[0m\033[32mo\033[0m", output.output);
+        output.write("fo>bar <comm", false, OutputType.NORMAL);
+        output.writeln("ent>baz");
+        output.write("<info>qux</info>", false, OutputType.RAW);
+        output.end();
+        output.end();
+        assertEquals("\033[32mfo\033[0m\033[32mo\033[0m\033[mbar \033[0m\033[33mbaz\033[0m\n<info>qux</info>", output.output);
+
+        output.clear();
+        output.write("<info>foo");
+        output.write("bar");
+        assertEquals("Messages are formatted separately once ended", "\033[32mfoo\033[0mbar", output.output);
+
+        output.clear();
+        output.begin();
+        output.write("<info>foo</");
+        output.end();
+        assertEquals("An incomplete tag is written as it is", "\033[32mfoo\033[0m</", output.output);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBeginTwice() {
+        TestOutput output = new TestOutput();
+        output.begin();
+        output.begin();
+    }
+
+    class FailingSupplier implements OutputInterface.MessageSupplier {
+
+        @Override
+        public String get() {
+            fail("The message is not built");
+
+            return null;
+        }
+    }
+
     class TestOutput extends Output {
 
         public TestOutput() {
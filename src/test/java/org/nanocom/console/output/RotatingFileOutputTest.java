@@ -0,0 +1,165 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nanocom.console.exception.OutputException;
+
+public class RotatingFileOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public RotatingFileOutputTest() {
+    }
+
+    @Test
+    public void testRotateOnSize() throws IOException {
+        File file = new File(folder.getRoot(), "worker.log");
+        String line = "0123456789";
+        RotatingFileOutput output = new RotatingFileOutput(file, 5 * (line.length() + EOL.length()));
+        output.setMaxFiles(2);
+        output.setCompressed(true);
+
+        for (int i = 0; i < 5 * 6 + 2; i++) {
+            output.writeln(line);
+        }
+        output.close();
+
+        File[] files = folder.getRoot().listFiles();
+        Arrays.sort(files);
+        assertEquals("The file and the two last rotated files are kept", 3, files.length);
+        assertEquals(file, files[0]);
+        assertEquals(repeat(line + EOL, 2), read(files[0], false));
+
+        for (int i = 1; i < files.length; i++) {
+            assertTrue(files[i].getName().endsWith(RotatingFileOutput.COMPRESSED_EXTENSION));
+            assertEquals(repeat(line + EOL, 5), read(files[i], true));
+        }
+    }
+
+    @Test
+    public void testRotate() throws IOException {
+        File file = new File(folder.getRoot(), "worker.log");
+        RotatingFileOutput output = new RotatingFileOutput(file, 0);
+        output.setRotationInterval(60000);
+
+        output.write("foo");
+        output.rotate();
+        output.writeln("<info>bar</info>");
+        output.close();
+        output.close();
+
+        File[] files = folder.getRoot().listFiles();
+        Arrays.sort(files);
+        assertEquals(2, files.length);
+        assertEquals("bar" + EOL, read(files[0], false));
+        assertEquals("foo", read(files[1], false));
+    }
+
+    @Test
+    public void testRotatedFileName() throws ParseException {
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+05:00"));
+        try {
+            File file = new File(folder.getRoot(), "worker.log");
+            RotatingFileOutput output = new RotatingFileOutput(file, 0);
+            output.write("foo");
+            output.rotate();
+            output.close();
+
+            File[] files = folder.getRoot().listFiles();
+            Arrays.sort(files);
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS");
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            long rotated = format.parse(files[1].getName().substring(file.getName().length() + 1)).getTime();
+            assertTrue("The file is named after the time in UTC", Math.abs(System.currentTimeMillis() - rotated) < 60000);
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    @Test
+    public void testRotateFailure() throws IOException {
+        File file = new File(folder.getRoot(), "worker.log");
+        RotatingFileOutput output = new RotatingFileOutput(file, 0);
+
+        output.write("foo");
+        assertTrue(file.delete());
+        try {
+            output.rotate();
+            fail("rotate() reports that the file could not be renamed");
+        } catch (OutputException e) {
+            assertTrue(e.getCause().getMessage().startsWith("Unable to rename the file"));
+        }
+
+        output.write("bar");
+        output.close();
+        assertEquals("The file is written again", "bar", read(file, false));
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        File file = new File(folder.getRoot(), "worker.log");
+        RotatingFileOutput output = new RotatingFileOutput(file, 0);
+        output.write("foo");
+        output.close();
+
+        output = new RotatingFileOutput(file, 0);
+        output.write("bar");
+        output.close();
+
+        assertEquals("foobar", read(file, false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterClose() {
+        RotatingFileOutput output = new RotatingFileOutput(new File(folder.getRoot(), "worker.log"), 0);
+        output.close();
+        output.write("foo");
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+
+        return builder.toString();
+    }
+
+    private static String read(File file, boolean compressed) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = compressed ? new GZIPInputStream(new FileInputStream(file)) : new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+
+        return bytes.toString();
+    }
+}
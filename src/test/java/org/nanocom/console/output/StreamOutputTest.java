@@ -0,0 +1,121 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.nanocom.console.output.OutputInterface.VerbosityLevel;
+
+public class StreamOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public StreamOutputTest() {
+    }
+
+    @Test
+    public void testWrite() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamOutput output = new StreamOutput(new PrintStream(bytes), VerbosityLevel.NORMAL, false);
+        assertEquals("Streams other than the standard output are flushed after each message", FlushPolicy.ALWAYS, output.getFlushPolicy());
+
+        output.write("foo");
+        assertEquals("foo", bytes.toString());
+        output.writeln("<info>bar</info>");
+        assertEquals("foobar" + EOL, bytes.toString());
+        output.printf("%s-%d", "baz", 1);
+        assertEquals("foobar" + EOL + "baz-1", bytes.toString());
+    }
+
+    @Test
+    public void testFlushPolicies() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamOutput output = new StreamOutput(new PrintStream(bytes), VerbosityLevel.NORMAL, false);
+
+        output.setFlushPolicy(FlushPolicy.NEWLINE);
+        output.write("foo");
+        assertEquals("", bytes.toString());
+        output.write("bar\nbaz");
+        assertEquals("foobar\nbaz", bytes.toString());
+        output.write("qux");
+        output.writeln("");
+        assertEquals("foobar\nbazqux" + EOL, bytes.toString());
+
+        bytes.reset();
+        output.printf("%s", "foo");
+        assertEquals("", bytes.toString());
+        output.printf("%s", "bar\n");
+        assertEquals("foobar\n", bytes.toString());
+        output.printf("baz%n");
+        assertEquals("foobar\nbaz" + EOL, bytes.toString());
+
+        bytes.reset();
+        output.setFlushPolicy(FlushPolicy.SIZE);
+        output.setFlushSize(("foo" + EOL + "bar").length());
+        output.writeln("foo");
+        output.write("ba");
+        assertEquals("", bytes.toString());
+        output.write("r");
+        assertEquals("foo" + EOL + "bar", bytes.toString());
+
+        bytes.reset();
+        output.setFlushPolicy(FlushPolicy.EXPLICIT);
+        output.writeln("foo");
+        output.printf("%s", "bar");
+        assertEquals("", bytes.toString());
+        output.flush();
+        assertEquals("foo" + EOL + "bar", bytes.toString());
+
+        bytes.reset();
+        output.setFlushPolicy(FlushPolicy.INTERVAL);
+        output.setFlushInterval(0);
+        output.write("foo");
+        assertEquals("foo", bytes.toString());
+    }
+
+    @Test
+    public void testBegin() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamOutput output = new StreamOutput(new PrintStream(bytes), VerbosityLevel.NORMAL, true);
+        output.setFlushPolicy(FlushPolicy.NEWLINE);
+
+        output.begin();
+        output.write("<info>foo</in", false);
+        output.write("fo>bar", false);
+        assertEquals("The parts are buffered until the line ends", "", bytes.toString());
+
+        output.writeln("");
+        output.end();
+        assertEquals("\033[32mfoo\033[0m\033[mbar\033[0m" + EOL, bytes.toString());
+    }
+
+    @Test
+    public void testCharset() throws UnsupportedEncodingException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamOutput output = new StreamOutput(new PrintStream(bytes, false, "UTF-16BE"), VerbosityLevel.NORMAL, false);
+
+        assertNull(output.getCharset());
+        output.write("caf\u00e9");
+        assertEquals("The stream encodes the text with its own charset", "caf\u00e9", bytes.toString("UTF-16BE"));
+
+        bytes.reset();
+        output.setCharset(Charset.forName("UTF-8"));
+        assertEquals(Charset.forName("UTF-8"), output.getCharset());
+        output.write("caf\u00e9");
+        assertArrayEquals(new byte[] {'c', 'a', 'f', (byte) 0xc3, (byte) 0xa9}, bytes.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFlushSize() {
+        new StreamOutput(new PrintStream(new ByteArrayOutputStream())).setFlushSize(0);
+    }
+}
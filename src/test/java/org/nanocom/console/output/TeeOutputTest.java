@@ -0,0 +1,90 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.nanocom.console.exception.OutputException;
+import org.nanocom.console.output.OutputInterface.OutputType;
+import org.nanocom.console.output.OutputInterface.VerbosityLevel;
+
+public class TeeOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public TeeOutputTest() {
+    }
+
+    @Test
+    public void testWrite() {
+        InMemoryOutput console = new InMemoryOutput();
+        console.setDecorated(true);
+        InMemoryOutput log = new InMemoryOutput(VerbosityLevel.VERBOSE);
+        TeeOutput output = new TeeOutput(console, log);
+
+        output.writeln("<info>foo</info>");
+        output.writeln("<comment>bar</comment>", VerbosityLevel.VERBOSE);
+        output.write("<info>baz</info>", false, OutputType.RAW);
+        output.printf("<info>%s</info>", "qux");
+
+        assertEquals("\033[32mfoo\033[0m" + EOL + "<info>baz</info>\033[32mqux\033[0m", console.getBuffer().toString());
+        assertEquals("foo" + EOL + "bar" + EOL + "<info>baz</info>qux", log.getBuffer().toString());
+        assertEquals("The tee is as verbose as its most verbose output", VerbosityLevel.VERBOSE, output.getVerbosity());
+        assertTrue(output.isDecorated());
+
+        output.setVerbosity(VerbosityLevel.QUIET);
+        output.writeln("foo");
+        assertEquals("qux", log.getBuffer().substring(log.getBuffer().length() - 3));
+    }
+
+    @Test
+    public void testWriteAtLevel() {
+        InMemoryOutput quiet = new InMemoryOutput(VerbosityLevel.QUIET);
+        TeeOutput output = new TeeOutput(quiet);
+
+        output.writeln("foo", VerbosityLevel.QUIET);
+        output.writeln("bar");
+        output.printf(VerbosityLevel.QUIET, "%s", "baz");
+        assertEquals("foo" + EOL + "baz", quiet.getBuffer().toString());
+    }
+
+    @Test
+    public void testCloseFailure() {
+        final int[] flushed = new int[1];
+        AsyncOutput failing = new AsyncOutput(new InMemoryOutput() {
+            @Override
+            protected void doWrite(String message, boolean newline) {
+                throw new IllegalStateException("broken");
+            }
+        });
+        InMemoryOutput log = new InMemoryOutput() {
+            @Override
+            public void flush() {
+                flushed[0]++;
+            }
+        };
+        AsyncOutput async = new AsyncOutput(new InMemoryOutput());
+        TeeOutput output = new TeeOutput(failing, log, async);
+
+        output.write("foo");
+        try {
+            output.close();
+            fail("close() reports the failure of an output");
+        } catch (OutputException e) {
+            assertEquals("broken", e.getCause().getMessage());
+        }
+
+        assertEquals("The outputs after the failing one are flushed", 1, flushed[0]);
+        try {
+            async.write("bar");
+            fail("The outputs after the failing one are closed");
+        } catch (IllegalStateException e) {
+            // Closed
+        }
+    }
+}
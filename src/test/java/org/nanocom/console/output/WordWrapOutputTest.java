@@ -0,0 +1,58 @@
+/*
+ * This file is part of the Console package.
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+
+package org.nanocom.console.output;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class WordWrapOutputTest {
+
+    private static final String EOL = System.getProperty("line.separator");
+
+    public WordWrapOutputTest() {
+    }
+
+    @Test
+    public void testWrite() {
+        InMemoryOutput memory = new InMemoryOutput();
+        WordWrapOutput output = new WordWrapOutput(memory, 10);
+
+        output.writeln("The quick brown fox jumps");
+        assertEquals("The quick" + EOL + "brown fox" + EOL + "jumps" + EOL, memory.getBuffer().toString());
+
+        memory.getBuffer().setLength(0);
+        output.write("foo ");
+        output.write("bar baz qux");
+        output.writeln("");
+        assertEquals("Messages are wrapped as a single line", "foo bar" + EOL + "baz qux" + EOL, memory.getBuffer().toString());
+    }
+
+    @Test
+    public void testPrintf() {
+        InMemoryOutput memory = new InMemoryOutput();
+        WordWrapOutput output = new WordWrapOutput(memory, 10);
+
+        output.printf("%s %s%n", "The quick", "brown fox jumps");
+        assertEquals("The quick" + EOL + "brown fox" + EOL + "jumps" + EOL, memory.getBuffer().toString());
+    }
+
+    @Test
+    public void testStyles() {
+        InMemoryOutput memory = new InMemoryOutput();
+        memory.setDecorated(true);
+        WordWrapOutput output = new WordWrapOutput(memory, 5);
+
+        output.writeln("<info>aaa bbb</info>");
+        assertEquals("The style is kept on the next line", "\033[32maaa\033[0m" + EOL + "\033[32mbbb\033[0m" + EOL, memory.getBuffer().toString());
+
+        memory.getBuffer().setLength(0);
+        output.printf("<info>%s</info>", "aaa bbb");
+        output.writeln("");
+        assertEquals("The escape sequences keep the style across the lines", "\033[32maaa" + EOL + "bbb\033[0m" + EOL, memory.getBuffer().toString());
+    }
+}